@@ -1,11 +1,68 @@
 package com.envionsoftware.sounds.analysis;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.util.Arrays;
 
 public class AnalysingTools {
+    static final int HISTOGRAM_MIN_LENGTH = 256;
+    static final int HISTOGRAM_MAX_LENGTH = 4096;
+
+    private static final int MAX_HISTOGRAM_PASSES = 4;
+    private static final int MIN_OCTAVE = Double.MIN_EXPONENT - 1;
+    private static final int NUMBER_OF_OCTAVES = Double.MAX_EXPONENT - MIN_OCTAVE + 1;
+    // - binary exponents of all positive doubles (including subnormal), 2047 < HISTOGRAM_MAX_LENGTH
+    private static final int SELECTION_INSERTION_SORT_THRESHOLD = 16;
+
+    private static final String VECTOR_KERNELS_CLASS_NAME = "com.envionsoftware.sounds.analysis.VectorAnalysingTools";
+    private static final VectorKernels VECTOR_KERNELS = loadVectorKernels();
+    private static final boolean VECTOR_API_AVAILABLE = VECTOR_KERNELS != null;
+    // - true if JVM is started with "--add-modules jdk.incubator.vector" option
+    // and the optional classes of the "vector" source root are in the class path
+    private static boolean vectorKernelsUsed = VECTOR_API_AVAILABLE
+        && !"false".equalsIgnoreCase(System.getProperty("com.envionsoftware.sounds.analysis.vectorKernels"));
+
     // Disable instantiation:
     private AnalysingTools() {}
 
+    public static boolean isVectorApiAvailable() {
+        return VECTOR_API_AVAILABLE;
+    }
+
+    public static boolean isVectorKernelsUsed() {
+        return vectorKernelsUsed;
+    }
+
+    // Switches some functions below between SIMD (VectorAnalysingTools) and usual scalar code.
+    // SIMD code is used by default, if Vector API is available (see isVectorApiAvailable()) and the system
+    // property "com.envionsoftware.sounds.analysis.vectorKernels" is not "false"; true argument is ignored
+    // if Vector API is not available. Should be called before starting analysis.
+    public static void setVectorKernelsUsed(boolean vectorKernelsUsed) {
+        AnalysingTools.vectorKernelsUsed = vectorKernelsUsed && VECTOR_API_AVAILABLE;
+    }
+
+    // Returns null if the Vector API module or the optional VectorAnalysingTools class is not available
+    private static VectorKernels loadVectorKernels() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return null;
+        }
+        final Class<?> kernelsClass;
+        try {
+            kernelsClass = Class.forName(VECTOR_KERNELS_CLASS_NAME);
+        } catch (ClassNotFoundException | LinkageError e) {
+            return null;
+            // - the optional source root is not compiled or not in the class path
+        }
+        try {
+            final MethodHandle constructor = MethodHandles.lookup().findConstructor(
+                kernelsClass, MethodType.methodType(void.class));
+            return (VectorKernels) constructor.invoke();
+        } catch (Throwable e) {
+            throw new AssertionError("Cannot create " + VECTOR_KERNELS_CLASS_NAME, e);
+        }
+    }
+
     public static double[] intToDouble(int[] values) {
         double[] result = new double[values.length];
         for (int k = 0; k < result.length; k++) {
@@ -16,23 +73,228 @@ public class AnalysingTools {
 
     // Functions below are C-like: they work with first count elements of the passed arrays
     // and do not try to allocate memory (for maximal speed).
+    static void squares(double[] result, double[] values, int count) {
+        if (vectorKernelsUsed) {
+            VECTOR_KERNELS.squares(result, values, count);
+            return;
+        }
+        for (int k = 0; k < count; k++) {
+            result[k] = values[k] * values[k];
+        }
+    }
+
     static double maxValue(double[] values, int count) {
+        return maxValue(values, 0, count);
+    }
+
+    // Returns maximum of values[from..to-1] (-infinity if from >= to)
+    static double maxValue(double[] values, int from, int to) {
+        if (vectorKernelsUsed) {
+            return VECTOR_KERNELS.maxValue(values, from, to);
+        }
         double result = Double.NEGATIVE_INFINITY;
-        for (int i = 0; i < count; i++) {
-            result = Math.max(result, values[i]);
+        for (int k = from; k < to; k++) {
+            result = Math.max(result, values[k]);
+        }
+        return result;
+    }
+
+    // Returns minimum of values[from..to-1] (+infinity if from >= to)
+    static double minValue(double[] values, int from, int to) {
+        if (vectorKernelsUsed) {
+            return VECTOR_KERNELS.minValue(values, from, to);
+        }
+        double result = Double.POSITIVE_INFINITY;
+        for (int k = from; k < to; k++) {
+            result = Math.min(result, values[k]);
         }
         return result;
     }
 
+    // Threshold scans: return the first or the last index k in from..to-1, where values[k] > threshold
+    // ("Greater") or values[k] < threshold ("Less"), or -1 if there is no such index.
+    static int firstGreater(double[] values, int from, int to, double threshold) {
+        if (vectorKernelsUsed) {
+            return VECTOR_KERNELS.firstGreater(values, from, to, threshold);
+        }
+        for (int k = from; k < to; k++) {
+            if (values[k] > threshold) {
+                return k;
+            }
+        }
+        return -1;
+    }
+
+    static int firstLess(double[] values, int from, int to, double threshold) {
+        if (vectorKernelsUsed) {
+            return VECTOR_KERNELS.firstLess(values, from, to, threshold);
+        }
+        for (int k = from; k < to; k++) {
+            if (values[k] < threshold) {
+                return k;
+            }
+        }
+        return -1;
+    }
+
+    static int lastGreater(double[] values, int from, int to, double threshold) {
+        if (vectorKernelsUsed) {
+            return VECTOR_KERNELS.lastGreater(values, from, to, threshold);
+        }
+        for (int k = to - 1; k >= from; k--) {
+            if (values[k] > threshold) {
+                return k;
+            }
+        }
+        return -1;
+    }
+
+    static int lastLess(double[] values, int from, int to, double threshold) {
+        if (vectorKernelsUsed) {
+            return VECTOR_KERNELS.lastLess(values, from, to, threshold);
+        }
+        for (int k = to - 1; k >= from; k--) {
+            if (values[k] < threshold) {
+                return k;
+            }
+        }
+        return -1;
+    }
+
     static double percentile(double[] values, int offset, int count, double[] workMemory, double level) {
         if (count <= 0) {
             // to be on the safe side
             return Double.NaN;
         }
-        //TODO!! use histogram 256 values between min and max (precision will be enough, O(256)+O(count) ops)
         System.arraycopy(values, offset, workMemory, 0, count);
         Arrays.sort(workMemory, 0, count);
         // - the simplest, but not the fastest way
+        return workMemory[percentileIndex(count, level)];
+    }
+
+    // Returns the same result as percentile(), but uses introselect instead of sorting: O(count) in average.
+    static double percentileBySelection(
+        double[] values,
+        int offset,
+        int count,
+        double[] workMemory,
+        double level)
+    {
+        if (count <= 0) {
+            return Double.NaN;
+        }
+        System.arraycopy(values, offset, workMemory, 0, count);
+        return select(workMemory, 0, count, percentileIndex(count, level));
+    }
+
+    // Approximate percentile: for non-negative values (like averaged squares) the result differs from percentile()
+    // not more than maxRelativeError*percentile(), even for heavy-tailed data. The first pass finds min, max
+    // and the histogram of binary exponents (octaves 2^e..2^(e+1)); the found octave is split into 256 bars
+    // (or 4096 if 256 is not enough) and, if necessary, the found bar is refined by additional passes.
+    // If some values are negative, the error is relative to max-min difference (the whole range is split).
+    // Does not modify the values and does not use double work memory.
+    // histogram must contain at least HISTOGRAM_MAX_LENGTH elements.
+    static double percentileByHistogram(
+        double[] values,
+        int offset,
+        int count,
+        int[] histogram,
+        double level,
+        double maxRelativeError)
+    {
+        if (count <= 0) {
+            return Double.NaN;
+        }
+        maxRelativeError = Math.max(maxRelativeError, 0.0);
+        Arrays.fill(histogram, 0, NUMBER_OF_OCTAVES, 0);
+        int numberOfZeros = 0;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (int k = offset, to = offset + count; k < to; k++) {
+            final double v = values[k];
+            if (v < min) {
+                min = v;
+            }
+            if (v > max) {
+                max = v;
+            }
+            if (v > 0.0) {
+                histogram[Math.getExponent(v) - MIN_OCTAVE]++;
+            } else if (v == 0.0) {
+                numberOfZeros++;
+            }
+        }
+        if (!(max > min)) {
+            // all values are equal (or NaN)
+            return min;
+        }
+        final int rank = percentileIndex(count, level);
+        if (min < 0.0) {
+            return refinePercentile(values, offset, count, histogram, rank, min, max, maxRelativeError * (max - min));
+        }
+        int rest = rank - numberOfZeros;
+        if (rest < 0) {
+            return 0.0;
+        }
+        int octave = 0;
+        while (octave < NUMBER_OF_OCTAVES - 1 && rest >= histogram[octave]) {
+            rest -= histogram[octave];
+            octave++;
+        }
+        final int exponent = octave + MIN_OCTAVE;
+        final double low = exponent < Double.MIN_EXPONENT ? 0.0 : Math.scalb(1.0, exponent);
+        // - subnormal values have exponent Double.MIN_EXPONENT - 1
+        final double high = Math.min(max, Math.scalb(1.0, exponent + 1));
+        return refinePercentile(values, offset, count, histogram, rank, low, high, maxRelativeError * low);
+        // - the result is not less than low
+    }
+
+    // Finds the bar, containing the value with the given rank, in the histograms of low..high range;
+    // the value must be inside this range
+    private static double refinePercentile(
+        double[] values,
+        int offset,
+        int count,
+        int[] histogram,
+        int rank,
+        double low,
+        double high,
+        double maxError)
+    {
+        for (int pass = 0; ; pass++) {
+            final double width = high - low;
+            final int bars = 0.5 * width / HISTOGRAM_MIN_LENGTH <= maxError ?
+                HISTOGRAM_MIN_LENGTH :
+                HISTOGRAM_MAX_LENGTH;
+            final double scale = bars / width;
+            Arrays.fill(histogram, 0, bars, 0);
+            int below = 0;
+            for (int k = offset, to = offset + count; k < to; k++) {
+                final double v = values[k];
+                if (v < low) {
+                    below++;
+                } else if (v <= high) {
+                    int bar = (int) ((v - low) * scale);
+                    histogram[bar < bars ? bar : bars - 1]++;
+                }
+            }
+            int rest = Math.max(rank - below, 0);
+            int bar = 0;
+            while (bar < bars - 1 && rest >= histogram[bar]) {
+                rest -= histogram[bar];
+                bar++;
+            }
+            final double barLow = low + bar / scale;
+            final double barHigh = bar == bars - 1 ? high : Math.min(high, low + (bar + 1) / scale);
+            if (0.5 * (barHigh - barLow) <= maxError || pass >= MAX_HISTOGRAM_PASSES - 1 || !(barHigh > barLow)) {
+                return 0.5 * (barLow + barHigh);
+            }
+            low = barLow;
+            high = barHigh;
+        }
+    }
+
+    static int percentileIndex(int count, double level) {
         int index = (int) Math.round(level * count);
         if (index > count - 1) {
             index = count - 1;
@@ -40,7 +302,126 @@ public class AnalysingTools {
         if (index < 0) {
             index = 0;
         }
-        return workMemory[index];
+        return index;
+    }
+
+    // Introselect: rearranges values[from..to-1] and returns the element, which would be at the given index
+    // after sorting. Falls back to sorting if partitioning is too unbalanced.
+    static double select(double[] values, int from, int to, int index) {
+        int depthLimit = 2 * (32 - Integer.numberOfLeadingZeros(to - from));
+        while (to - from > SELECTION_INSERTION_SORT_THRESHOLD) {
+            if (depthLimit-- == 0) {
+                Arrays.sort(values, from, to);
+                return values[index];
+            }
+            final double pivot = median(values[from], values[(from + to) >>> 1], values[to - 1]);
+            // 3-way partitioning: [from, lt) < pivot, [lt, i) == pivot, (gt, to) > pivot
+            int lt = from;
+            int gt = to - 1;
+            for (int i = from; i <= gt; ) {
+                final double v = values[i];
+                if (v < pivot) {
+                    values[i++] = values[lt];
+                    values[lt++] = v;
+                } else if (v > pivot) {
+                    values[i] = values[gt];
+                    values[gt--] = v;
+                } else {
+                    i++;
+                }
+            }
+            if (index < lt) {
+                to = lt;
+            } else if (index > gt) {
+                from = gt + 1;
+            } else {
+                return pivot;
+            }
+        }
+        for (int i = from + 1; i < to; i++) {
+            final double v = values[i];
+            int j = i - 1;
+            for (; j >= from && values[j] > v; j--) {
+                values[j + 1] = values[j];
+            }
+            values[j + 1] = v;
+        }
+        return values[index];
+    }
+
+    // Float analogue of select(double[], ...)
+    static float select(float[] values, int from, int to, int index) {
+        int depthLimit = 2 * (32 - Integer.numberOfLeadingZeros(to - from));
+        while (to - from > SELECTION_INSERTION_SORT_THRESHOLD) {
+            if (depthLimit-- == 0) {
+                Arrays.sort(values, from, to);
+                return values[index];
+            }
+            final float pivot = (float) median(values[from], values[(from + to) >>> 1], values[to - 1]);
+            int lt = from;
+            int gt = to - 1;
+            for (int i = from; i <= gt; ) {
+                final float v = values[i];
+                if (v < pivot) {
+                    values[i++] = values[lt];
+                    values[lt++] = v;
+                } else if (v > pivot) {
+                    values[i] = values[gt];
+                    values[gt--] = v;
+                } else {
+                    i++;
+                }
+            }
+            if (index < lt) {
+                to = lt;
+            } else if (index > gt) {
+                from = gt + 1;
+            } else {
+                return pivot;
+            }
+        }
+        for (int i = from + 1; i < to; i++) {
+            final float v = values[i];
+            int j = i - 1;
+            for (; j >= from && values[j] > v; j--) {
+                values[j + 1] = values[j];
+            }
+            values[j + 1] = v;
+        }
+        return values[index];
+    }
+
+    // Exact percentile (the same element as percentile() would return) of non-negative float values
+    // without work memory: the bits of non-negative floats are ordered like the floats themselves,
+    // so we find the high 16 bits of the result by one histogram pass and the low 16 bits by another.
+    // histogram must contain at least 65536 elements.
+    static float percentileOfNonNegative(float[] values, int offset, int count, int[] histogram, double level) {
+        if (count <= 0) {
+            return Float.NaN;
+        }
+        int rest = percentileIndex(count, level);
+        Arrays.fill(histogram, 0, 65536, 0);
+        for (int k = offset, to = offset + count; k < to; k++) {
+            histogram[Float.floatToRawIntBits(values[k]) >>> 16]++;
+        }
+        int high = 0;
+        while (rest >= histogram[high]) {
+            rest -= histogram[high];
+            high++;
+        }
+        Arrays.fill(histogram, 0, 65536, 0);
+        for (int k = offset, to = offset + count; k < to; k++) {
+            final int bits = Float.floatToRawIntBits(values[k]);
+            if (bits >>> 16 == high) {
+                histogram[bits & 0xFFFF]++;
+            }
+        }
+        int low = 0;
+        while (rest >= histogram[low]) {
+            rest -= histogram[low];
+            low++;
+        }
+        return Float.intBitsToFloat(high << 16 | low);
     }
 
     static int averageCount(int count, int aperture) {
@@ -68,4 +449,46 @@ public class AnalysingTools {
             result[k] = sum * apertureInv;
         }
     }
+
+    // Means of blocks of blockLength sequential values: result[j] = (sum of values[j * blockLength + i],
+    // 0 <= i < blockLength) / blockLength, 0 <= j < count / blockLength (the incomplete last block is skipped).
+    // Every block sum is found independently, so the sum of m sequential results, multiplied by blockLength,
+    // is the sum of m * blockLength source values (exactly for integer values and power-of-two blockLength).
+    static int blockMeans(double[] result, double[] values, int count, int blockLength) {
+        final int resultLen = count / blockLength;
+        final double blockLengthInv = 1.0 / blockLength;
+        for (int j = 0, k = 0; j < resultLen; j++) {
+            double sum = 0.0;
+            for (int to = k + blockLength; k < to; k++) {
+                sum += values[k];
+            }
+            result[j] = sum * blockLengthInv;
+        }
+        return resultLen;
+    }
+
+    // Exact sums of squares of aperture sequential values, rounded to float: result[k] = (float) sum of
+    // values[k + i]^2, 0 <= i < aperture (long sum cannot overflow for 16-bit values while aperture < 2^33)
+    static void slidingSumsOfSquares(float[] result, short[] values, int count, int aperture) {
+        aperture = Math.max(aperture, 1);
+        final int resultLen = averageCount(count, aperture);
+        if (resultLen == 0) {
+            return;
+        }
+        long sum = 0;
+        for (int k = 0; k < aperture; k++) {
+            sum += values[k] * values[k];
+        }
+        result[0] = (float) sum;
+        for (int i = aperture, k = 1; k < resultLen; i++, k++) {
+            sum += values[i] * values[i] - values[k - 1] * values[k - 1];
+            result[k] = (float) sum;
+        }
+    }
+
+    private static double median(double a, double b, double c) {
+        return a < b ?
+            (b < c ? b : Math.max(a, c)) :
+            (a < c ? a : Math.max(b, c));
+    }
 }
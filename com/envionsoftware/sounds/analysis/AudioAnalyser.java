@@ -3,11 +3,24 @@ package com.envionsoftware.sounds.analysis;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.logging.Logger;
 
 public class AudioAnalyser {
     private static final Logger LOG = Logger.getLogger(AudioAnalyser.class.getName());
 
+    private static final int MIN_PARALLEL_CHUNK_LENGTH = 65536;
+    // - averaged samples; smaller chunks are not analysed in parallel
+    private static final int NUMBER_OF_ANALYSIS_PARAMETERS = 14;
+    private static final int MIN_IMPULSE_SEGMENT_LOG = 12;
+    // - averagedImpulseSquare is calculated lazily by segments of 2^k >= 4096 elements
+    // (they must be aligned to ThresholdCrossingFinder.SUPERBLOCK_LENGTH)
+    private static final int QUIET_BLOCK_LOG = 10;
+    // - blocks of 1024 averaged samples, skipped by analyze() if their maximum is too low
+    private static final int STREAMING_RESERVE_LOG = 3;
+    // - streaming buffers contain capacity/8 extra elements for appended samples
+
     // (All durations and apertures are specified in seconds)
     private final double singleSampleDuration;
 
@@ -16,6 +29,36 @@ public class AudioAnalyser {
     double[] amplitudeSamples = new double[0];
     double[] amplitudeSquare = new double[0];
     double[] workMemory = new double[0];
+    int[] histogramWorkMemory = new int[0];
+    private EnergySlidingSum energySum = new EnergySlidingSum();
+    private boolean energySumActual = false;
+    // - scale of fixed-point sliding sums of amplitudeSquare (usual mode only), chosen once per samples
+
+    // Streaming mode (see appendSamples):
+    private int streamingCapacity = 0;
+    // - 0 means usual mode (setSamples)
+    private int streamingOffset = 0;
+    // - until compaction, actual samples are amplitudeSamples[streamingOffset..streamingOffset+count-1],
+    // and averaged values are stored at the same offset
+    private long streamPosition = 0;
+    // - absolute index (since startStreaming) of the first actual sample
+    private int streamingAveragingAperture = 0;
+    private int streamingAveragingImpulseAperture = 0;
+    private double streamingSum = 0.0;
+    private double streamingImpulseSum = 0.0;
+    // - sums of last streamingAveraging(Impulse)Aperture samples of amplitudeSquare
+    private boolean reusingFinalResults = false;
+    private LocalMaximumTable finalLocalMaximums = new LocalMaximumTable();
+    private LocalMaximumTable newFinalLocalMaximums = new LocalMaximumTable();
+    private long finalResultsFrom = 0;
+    private long finalResultsTo = 0;
+    // - absolute averaged indexes (like streamPosition), for which finalLocalMaximums are actual
+    private double[] finalResultsParameters = null;
+    private double[] analysisParameters = null;
+    // - work memory for analysisParameters()
+    private int finalFromIndex = 0;
+    private int finalToIndex = 0;
+    // - averaged indexes in the current interval, for which results will be final
 
     // Customizable parameters:
     private double globalAmplitudeOfLoudSound = 0.0;
@@ -41,17 +84,67 @@ public class AudioAnalyser {
 
     private double maxDurationBetweenSequentialGoodMaximums = 2.0;
 
+    private PercentileAlgorithm percentileAlgorithm = PercentileAlgorithm.SELECTION;
+    private double maxPercentileHistogramError = 1.0 / (2 * AnalysingTools.HISTOGRAM_MIN_LENGTH);
+    // - relatively to the percentile; default value allows to find it by 256-bar histogram of one octave
+    private boolean slidingLowSignalPercentile = false;
+    // - true value is better for dense, noisy recordings with many local maximums
+    private int parallelism = 1;
+    // - maximal number of chunks, analysed in parallel by analyze(); 1 means single-thread analysis
+    private ForkJoinPool forkJoinPool = ForkJoinPool.commonPool();
+    private boolean skippingQuietBlocks = false;
+    // - true value allows to skip also blocks, which are loud, but too weak in comparison with typical signal
+    private int decimation = 1;
+    // - number of source samples in one element of the analysed energy envelope; 1 means no decimation
+
     // Preprocessing results:
-    private double maxAbsoluteSignal;
-    private double typicalAveragedSignal;
+    double maxAbsoluteSignal;
+    double typicalAveragedSignal;
 
     // Analysis results:
     int averagedCount = 0;
     double[] averagedSquare = new double[0];
     int averagedImpulseCount = 0;
     double[] averagedImpulseSquare = new double[0];
-    private List<AudioLocalMaximumApertureInfo> allLocalMaximums = new ArrayList<>();
-    private List<AudioLocalMaximumApertureInfo> goodLocalMaximums = new ArrayList<>();
+    private boolean lazyImpulseAveraging = false;
+    // - if true, averagedImpulseSquare is calculated only in segments, which were accessed by the analysis
+    private int impulseAveragingAperture = 1;
+    private int impulseSegmentLog = MIN_IMPULSE_SEGMENT_LOG;
+    private boolean[] impulseSegmentReady = new boolean[0];
+    private ThresholdCrossingFinder impulseThresholdFinder = new ThresholdCrossingFinder();
+    // - for threshold scans in averagedImpulseSquare
+    private double[] averagedBlockMax = new double[0];
+    // - maximums of averagedSquare in blocks of 2^QUIET_BLOCK_LOG elements
+    private int numberOfSkippedBlocks = 0;
+    private int numberOfScannedBlocks = 0;
+
+    // Sharing data with other profiles of MultiProfileAudioAnalyser (usual mode only):
+    private AudioAnalyser samplesSource = null;
+    // - if not null, amplitudeSamples, amplitudeSquare and energySum are objects of this analyser
+    private AudioAnalyser averagingSource = null;
+    private AudioAnalyser impulseAveragingSource = null;
+    // - if not null, averaged (impulse) values are taken from this analyser with the same aperture,
+    // which must be preprocessed (analysed) before this one
+    private boolean averagedSquareShared = false;
+    private boolean rangeMinimumFinderShared = false;
+    private boolean averagedImpulseSquareShared = false;
+    private final LocalMaximumTable localMaximumTable = new LocalMaximumTable();
+    private List<AudioLocalMaximumApertureInfo> allLocalMaximums = null;
+    private List<AudioLocalMaximumApertureInfo> goodLocalMaximums = null;
+    // - views of localMaximumTable, built on demand
+    private final AudioLocalMaximumApertureInfo analysedInfo = new AudioLocalMaximumApertureInfo();
+    private final AudioLocalMaximumApertureInfo finalResultCopy = new AudioLocalMaximumApertureInfo();
+    private boolean collectingLocalMaximums = true;
+    private DetectionListener detectionListener = null;
+    private final SlidingPercentileFinder slidingPercentileFinder = new SlidingPercentileFinder();
+    private RangeMinimumFinder rangeMinimumFinder = new RangeMinimumFinder();
+    private final LocalMaximumDetector localMaximumDetector = new LocalMaximumDetector();
+    private final SequentialGoodMaximumsTracker sequentialGoodMaximumsTracker = new SequentialGoodMaximumsTracker();
+    private AudioAnalyser decimatedAnalyser = null;
+    // - analyses the energy envelope when decimation > 1; its results are added to this analyser
+    private boolean decimatedResults = false;
+    // - true if the last preprocess() or analyze() used decimatedAnalyser
+    private final AudioLocalMaximumApertureInfo decimatedResultCopy = new AudioLocalMaximumApertureInfo();
     private int maxNumberOfSequentialGoodMaximums = -1;
     private int totalNumberOfSequentialGoodMaximums = -1;
 
@@ -82,16 +175,185 @@ public class AudioAnalyser {
             throw new IndexOutOfBoundsException("Invalid offset=" + offset + " or count=" + count +
                 " for array double[" + samples.length + "]");
         }
-        this.count = samples.length;
+        setSamples(count, (result, resultOffset, n) -> System.arraycopy(samples, offset, result, resultOffset, n));
+    }
+
+    // The same, but the samples are stored by the source directly into the internal array (without copying);
+    // for example, the source can decode them from a mapped file
+    public void setSamples(int count, SampleSource source) {
+        if (source == null) {
+            throw new NullPointerException("Null sample source");
+        }
+        if (count <= 0) {
+            throw new IllegalArgumentException("Zero or negative number of amplitude samples");
+        }
+        stopSharing();
+        this.streamingCapacity = 0;
+        this.streamingOffset = 0;
+        this.streamPosition = 0;
+        this.count = count;
         this.amplitudeSamples = allocateIfNecessary(this.amplitudeSamples, count);
-        System.arraycopy(samples, offset, this.amplitudeSamples, 0, count);
+        source.readSamples(this.amplitudeSamples, 0, count);
         this.amplitudeSquare = allocateIfNecessary(this.amplitudeSquare, count);
-        for (int k = 0; k < count; k++) {
-            this.amplitudeSquare[k] = this.amplitudeSamples[k] * this.amplitudeSamples[k];
-        }
+        AnalysingTools.squares(this.amplitudeSquare, this.amplitudeSamples, count);
+        this.energySumActual = false;
         this.workMemory = allocateIfNecessary(this.workMemory, count);
     }
 
+    // Starts streaming mode: all previous samples are removed, and following appendSamples calls will add samples
+    // to the end of the analysed interval, removing the oldest ones so that the interval contains not more than
+    // capacity samples. Squares and averaged values are calculated only for new samples.
+    public void startStreaming(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Zero or negative streaming capacity");
+        }
+        stopSharing();
+        this.streamingCapacity = capacity;
+        this.streamingOffset = 0;
+        this.streamPosition = 0;
+        this.finalResultsParameters = null;
+        this.finalLocalMaximums.clear();
+        this.finalResultsFrom = this.finalResultsTo = 0;
+        this.sequentialGoodMaximumsTracker.reset();
+        this.count = 0;
+        final int bufferLength = capacity + Math.max(capacity >> STREAMING_RESERVE_LOG, 1);
+        // - actual samples are moved to the beginning of the buffer by every analysis, which needs them there
+        // (O(capacity) like the analysis itself), and by appendSamples when the reserve is exhausted
+        // (amortized O(1) per sample while appending more than capacity/8 samples between analyses)
+        this.amplitudeSamples = allocateIfNecessary(this.amplitudeSamples, bufferLength);
+        this.amplitudeSquare = allocateIfNecessary(this.amplitudeSquare, bufferLength);
+        this.averagedSquare = allocateIfNecessary(this.averagedSquare, bufferLength);
+        this.averagedImpulseSquare = allocateIfNecessary(this.averagedImpulseSquare, bufferLength);
+        this.workMemory = allocateIfNecessary(this.workMemory, capacity);
+        restartStreamingAveraging();
+    }
+
+    public boolean isStreaming() {
+        return streamingCapacity > 0;
+    }
+
+    public int getStreamingCapacity() {
+        return streamingCapacity;
+    }
+
+    // Absolute index (since startStreaming) of the first sample in the analysed interval
+    public long streamPosition() {
+        return streamPosition;
+    }
+
+    public boolean isReusingFinalResults() {
+        return reusingFinalResults;
+    }
+
+    // If true, analyze() in streaming mode does not analyse again local maximums, which were found by previous
+    // analyze() calls and had all necessary samples around them (their results cannot change, excepting
+    // the comparison with typicalAveragedSignal, which is repeated). Such results are just copied with corrected
+    // sample indexes; near the interval start they are even more precise than full analysis, which would
+    // see only a part of the wide aperture.
+    // Use AudioLocalMaximumApertureInfo.getAbsoluteSampleIndex() to merge results of different calls.
+    public void setReusingFinalResults(boolean reusingFinalResults) {
+        this.reusingFinalResults = reusingFinalResults;
+        this.finalResultsParameters = null;
+        this.finalLocalMaximums.clear();
+    }
+
+    public void appendSamples(double[] samples, int offset, int count) {
+        checkAppendedSamples(samples == null ? -1 : samples.length, offset, count);
+        for (int k = offset, to = offset + count; k < to; k++) {
+            appendSample(samples[k]);
+        }
+    }
+
+    public void appendSamples(short[] samples, int offset, int count) {
+        checkAppendedSamples(samples == null ? -1 : samples.length, offset, count);
+        for (int k = offset, to = offset + count; k < to; k++) {
+            appendSample(samples[k]);
+        }
+    }
+
+    private void checkAppendedSamples(int samplesLength, int offset, int count) {
+        if (!isStreaming()) {
+            throw new IllegalStateException("Streaming mode is not started");
+        }
+        if (samplesLength < 0) {
+            throw new NullPointerException("Null amplitude samples");
+        }
+        if (count < 0 || offset < 0 || offset + count > samplesLength) {
+            throw new IndexOutOfBoundsException("Invalid offset=" + offset + " or count=" + count +
+                " for array of " + samplesLength + " samples");
+        }
+        if (streamingAveragingAperture != rawAveragingApertureLength()
+            || streamingAveragingImpulseAperture != rawAveragingImpulseApertureLength())
+        {
+            // apertures were changed
+            restartStreamingAveraging();
+        }
+    }
+
+    private void appendSample(double sample) {
+        int p = streamingOffset + count;
+        if (p == amplitudeSamples.length) {
+            compactStreamingBuffers();
+            p = count;
+        }
+        final double square = sample * sample;
+        amplitudeSamples[p] = sample;
+        amplitudeSquare[p] = square;
+        count++;
+        final int aperture = streamingAveragingAperture;
+        streamingSum += square;
+        if (count > aperture) {
+            streamingSum -= amplitudeSquare[p - aperture];
+        }
+        if (count >= aperture) {
+            averagedSquare[p - aperture + 1] = streamingSum * (1.0 / aperture);
+        }
+        final int impulseAperture = streamingAveragingImpulseAperture;
+        streamingImpulseSum += square;
+        if (count > impulseAperture) {
+            streamingImpulseSum -= amplitudeSquare[p - impulseAperture];
+        }
+        if (count >= impulseAperture) {
+            averagedImpulseSquare[p - impulseAperture + 1] = streamingImpulseSum * (1.0 / impulseAperture);
+        }
+        if (count > streamingCapacity) {
+            streamingOffset++;
+            count--;
+            streamPosition++;
+        }
+    }
+
+    private void compactStreamingBuffers() {
+        if (streamingOffset > 0) {
+            System.arraycopy(amplitudeSamples, streamingOffset, amplitudeSamples, 0, count);
+            System.arraycopy(amplitudeSquare, streamingOffset, amplitudeSquare, 0, count);
+            System.arraycopy(averagedSquare, streamingOffset, averagedSquare, 0, count);
+            System.arraycopy(averagedImpulseSquare, streamingOffset, averagedImpulseSquare, 0, count);
+            streamingOffset = 0;
+            // recalculating sums to avoid accumulation of rounding errors
+            streamingSum = sumOfLastSquares(streamingAveragingAperture);
+            streamingImpulseSum = sumOfLastSquares(streamingAveragingImpulseAperture);
+        }
+    }
+
+    private void restartStreamingAveraging() {
+        compactStreamingBuffers();
+        streamingAveragingAperture = rawAveragingApertureLength();
+        streamingAveragingImpulseAperture = rawAveragingImpulseApertureLength();
+        AnalysingTools.average(averagedSquare, amplitudeSquare, count, streamingAveragingAperture);
+        AnalysingTools.average(averagedImpulseSquare, amplitudeSquare, count, streamingAveragingImpulseAperture);
+        streamingSum = sumOfLastSquares(streamingAveragingAperture);
+        streamingImpulseSum = sumOfLastSquares(streamingAveragingImpulseAperture);
+    }
+
+    private double sumOfLastSquares(int n) {
+        double sum = 0.0;
+        for (int k = Math.max(count - n, 0); k < count; k++) {
+            sum += amplitudeSquare[k];
+        }
+        return sum;
+    }
+
     public double getGlobalAmplitudeOfLoudSound() {
         return globalAmplitudeOfLoudSound;
     }
@@ -119,6 +381,10 @@ public class AudioAnalyser {
         return Math.min(count, (int) (averagingAperture / singleSampleDuration));
     }
 
+    int rawAveragingApertureLength() {
+        return Math.max(1, (int) (averagingAperture / singleSampleDuration));
+    }
+
     public void setAveragingAperture(double averagingAperture) {
         if (averagingAperture <= 0.0) {
             throw new IllegalArgumentException("Zero or negative aperture");
@@ -134,6 +400,10 @@ public class AudioAnalyser {
         return Math.min(count, (int) (averagingImpulseAperture / singleSampleDuration));
     }
 
+    private int rawAveragingImpulseApertureLength() {
+        return Math.max(1, (int) (averagingImpulseAperture / singleSampleDuration));
+    }
+
     public void setAveragingImpulseAperture(double averagingImpulseAperture) {
         if (averagingImpulseAperture <= 0.0) {
             throw new IllegalArgumentException("Zero or negative aperture");
@@ -244,6 +514,115 @@ public class AudioAnalyser {
         this.maxDurationBetweenSequentialGoodMaximums = maxDurationBetweenSequentialGoodMaximums;
     }
 
+    public PercentileAlgorithm getPercentileAlgorithm() {
+        return percentileAlgorithm;
+    }
+
+    public void setPercentileAlgorithm(PercentileAlgorithm percentileAlgorithm) {
+        if (percentileAlgorithm == null) {
+            throw new NullPointerException("Null percentile algorithm");
+        }
+        this.percentileAlgorithm = percentileAlgorithm;
+    }
+
+    public double getMaxPercentileHistogramError() {
+        return maxPercentileHistogramError;
+    }
+
+    public void setMaxPercentileHistogramError(double maxPercentileHistogramError) {
+        if (maxPercentileHistogramError < 0.0) {
+            throw new IllegalArgumentException("Negative percentile histogram error");
+        }
+        this.maxPercentileHistogramError = maxPercentileHistogramError;
+    }
+
+    public boolean isSlidingLowSignalPercentile() {
+        return slidingLowSignalPercentile;
+    }
+
+    // If true, low signal percentiles in the wide aperture are found by sliding order statistics (exact result,
+    // O(log W) per every shift of the aperture); percentileAlgorithm is used by preprocess() only.
+    public void setSlidingLowSignalPercentile(boolean slidingLowSignalPercentile) {
+        this.slidingLowSignalPercentile = slidingLowSignalPercentile;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    // If parallelism > 1, analyze() splits the long interval into chunks (not more than parallelism)
+    // and analyses them in the fork/join pool; the results are identical to single-thread analysis.
+    public void setParallelism(int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Zero or negative parallelism");
+        }
+        this.parallelism = parallelism;
+    }
+
+    public ForkJoinPool getForkJoinPool() {
+        return forkJoinPool;
+    }
+
+    public void setForkJoinPool(ForkJoinPool forkJoinPool) {
+        if (forkJoinPool == null) {
+            throw new NullPointerException("Null fork/join pool");
+        }
+        this.forkJoinPool = forkJoinPool;
+    }
+
+    public boolean isSkippingQuietBlocks() {
+        return skippingQuietBlocks;
+    }
+
+    // analyze() always skips blocks of averaged samples, where all values are less than
+    // globalAmplitudeOfLoudSound: they cannot contain local maximums (see numberOfSkippedBlocks()).
+    // If this flag is true, it also skips blocks, which are too weak in comparison with typicalAveragedSignal
+    // (see minRatioOfGoodMaximumAndTypicalSignal): good maximums are the same, but local maximums, rejected
+    // because of too low ratio to typical signal, are not reported. Ignored when reusing final results.
+    public void setSkippingQuietBlocks(boolean skippingQuietBlocks) {
+        this.skippingQuietBlocks = skippingQuietBlocks;
+    }
+
+    public int getDecimation() {
+        return decimation;
+    }
+
+    // If decimation > 1, preprocess() and analyze() replace squared samples by the mean-square energy envelope
+    // with decimation times lower rate (for example, 32 for 44100 Hz gives ~1.4 kHz): every its element is
+    // the mean of squares in a block of decimation samples, found by exact block sum. All following stages
+    // (averaging, local maximums, low signal percentiles, impulse search) work with the envelope and are
+    // almost decimation times faster. Apertures are rounded to whole blocks, and found sample indexes
+    // are converted back to source samples with precision of one block (see getDecimation()).
+    // averagedSquare(), averagedImpulseSquare() and their counts are returned for the envelope.
+    // Ignored in streaming mode.
+    public void setDecimation(int decimation) {
+        if (decimation <= 0) {
+            throw new IllegalArgumentException("Zero or negative decimation");
+        }
+        this.decimation = decimation;
+    }
+
+    public boolean isCollectingLocalMaximums() {
+        return collectingLocalMaximums;
+    }
+
+    // If false, analyze() does not store found local maximums in localMaximumTable() (and in the lists):
+    // they are only passed to the detection listener. Then analysis does not allocate memory in a steady state
+    // (excepting parallel analysis), but postprocessFoundMaximums and postprocessNewFoundMaximums have no data.
+    public void setCollectingLocalMaximums(boolean collectingLocalMaximums) {
+        this.collectingLocalMaximums = collectingLocalMaximums;
+    }
+
+    public DetectionListener getDetectionListener() {
+        return detectionListener;
+    }
+
+    // The listener is called by analyze() in the current thread for every found local maximum
+    // in order of increasing sample index; null means no listener
+    public void setDetectionListener(DetectionListener detectionListener) {
+        this.detectionListener = detectionListener;
+    }
+
     public double singleSampleDuration() {
         return singleSampleDuration;
     }
@@ -253,10 +632,12 @@ public class AudioAnalyser {
     }
 
     public double[] amplitudeSamples() {
+        compactStreamingBuffers();
         return Arrays.copyOf(amplitudeSamples, count);
     }
 
     public double[] amplitudeSquare() {
+        compactStreamingBuffers();
         return Arrays.copyOf(amplitudeSquare, count);
     }
 
@@ -269,29 +650,59 @@ public class AudioAnalyser {
     }
 
     public int averagedCount() {
-        return averagedCount;
+        return decimatedResults ? decimatedAnalyser.averagedCount : averagedCount;
     }
 
     public double[] averagedSquare() {
-        return Arrays.copyOf(averagedSquare, averagedCount);
+        return decimatedResults ? decimatedAnalyser.averagedSquare() : Arrays.copyOf(averagedSquare, averagedCount);
     }
 
     public int averagedImpulseCount() {
-        return averagedImpulseCount;
+        return decimatedResults ? decimatedAnalyser.averagedImpulseCount : averagedImpulseCount;
     }
 
     public double[] averagedImpulseSquare() {
-        return Arrays.copyOf(averagedImpulseSquare, averagedImpulseCount);
+        return decimatedResults ?
+            decimatedAnalyser.averagedImpulseSquare() :
+            Arrays.copyOf(averageAllImpulseSegments(), averagedImpulseCount);
+    }
+
+    // Results of the last analyze() call without creating objects for every local maximum
+    public LocalMaximumTable localMaximumTable() {
+        return localMaximumTable;
     }
 
+    // The lists are created by the first call after analyze() (use localMaximumTable() to avoid allocations)
     public List<AudioLocalMaximumApertureInfo> allLocalMaximums() {
+        buildLocalMaximumLists();
         return allLocalMaximums;
     }
 
     public List<AudioLocalMaximumApertureInfo> goodLocalMaximums() {
+        buildLocalMaximumLists();
         return goodLocalMaximums;
     }
 
+    private void buildLocalMaximumLists() {
+        if (allLocalMaximums == null) {
+            allLocalMaximums = new ArrayList<>();
+            goodLocalMaximums = new ArrayList<>();
+            localMaximumTable.addInfos(allLocalMaximums, goodLocalMaximums);
+            // no problems to share the same instance between two lists:
+            // it cannot be modified outside this package
+        }
+    }
+
+    // Statistics of the last analyze() call: numbers of blocks of averaged samples (1024 in every block),
+    // which were skipped as quiet and which were scanned for local maximums
+    public int numberOfSkippedBlocks() {
+        return decimatedResults ? decimatedAnalyser.numberOfSkippedBlocks : numberOfSkippedBlocks;
+    }
+
+    public int numberOfScannedBlocks() {
+        return decimatedResults ? decimatedAnalyser.numberOfScannedBlocks : numberOfScannedBlocks;
+    }
+
     public int maxNumberOfSequentialGoodMaximums() {
         return maxNumberOfSequentialGoodMaximums;
     }
@@ -306,96 +717,736 @@ public class AudioAnalyser {
 
     // Usually called for large duration
     public void preprocess() {
+        this.maxAbsoluteSignal = samplesSource != null ?
+            samplesSource.maxAbsoluteSignal :
+            Math.sqrt(AnalysingTools.maxValue(amplitudeSquare, count));
+        if (prepareDecimatedAnalyser()) {
+            decimatedAnalyser.preprocess();
+            this.typicalAveragedSignal = decimatedAnalyser.typicalAveragedSignal;
+            return;
+        }
         average();
-        this.maxAbsoluteSignal = Math.sqrt(AnalysingTools.maxValue(amplitudeSquare, count));
-        this.typicalAveragedSignal = Math.sqrt(AnalysingTools.percentile(
-            averagedSquare, 0, averagedCount, workMemory, typicalSignalPercentile));
+        if (averagingSource != null && samePercentileSettings(averagingSource)) {
+            this.typicalAveragedSignal = averagingSource.typicalAveragedSignal;
+            return;
+        }
+        this.typicalAveragedSignal = Math.sqrt(percentile(0, averagedCount, typicalSignalPercentile));
     }
 
     // Usually called every 1-2 seconds for interval 3-5 seconds
     public void analyze() {
+        if (prepareDecimatedAnalyser()) {
+            clearLocalMaximums();
+            decimatedAnalyser.maxAbsoluteSignal = maxAbsoluteSignal;
+            decimatedAnalyser.typicalAveragedSignal = typicalAveragedSignal;
+            decimatedAnalyser.analyze();
+            // - results are added by addDecimatedLocalMaximum
+            return;
+        }
         average();
         // - Must be called also here, for a case when preprocess was called for another samples.
         // But it is very quick procedure.
         averageImpulse();
         int aperture = getLocalMaxApertureLength();
         int wideAperture = getLocalMaxWideApertureLength();
-        allLocalMaximums.clear();
-        goodLocalMaximums.clear();
-        AudioLocalMaximumApertureInfo info = new AudioLocalMaximumApertureInfo();
-        for (int index = 0; index < averagedCount; index++) {
+        clearLocalMaximums();
+        findAveragedBlockMaximums();
+        int reusedFrom = 0;
+        int reusedTo = 0;
+        // - averaged indexes, which already have final results in finalLocalMaximums
+        newFinalLocalMaximums.clear();
+        if (isStreaming()) {
+            if (reusingFinalResults) {
+                final double[] parameters = analysisParameters();
+                if (Arrays.equals(parameters, finalResultsParameters)) {
+                    reusedFrom = (int) Math.min(Math.max(finalResultsFrom - streamPosition, 0), averagedCount);
+                    reusedTo = (int) Math.min(Math.max(finalResultsTo - streamPosition, reusedFrom), averagedCount);
+                } else {
+                    finalLocalMaximums.clear();
+                    finalResultsParameters = parameters.clone();
+                }
+            }
+            findFinalResultsRange(aperture, wideAperture, reusedFrom, reusedTo);
+        } else {
+            finalFromIndex = finalToIndex = 0;
+        }
+        analyseLocalMaximumsInChunks(0, reusedFrom, aperture, wideAperture);
+        if (reusedTo > reusedFrom) {
+            final int shiftToSamples = getAveragingApertureLength() / 2;
+            for (int row = 0, n = finalLocalMaximums.size(); row < n; row++) {
+                final long index = finalLocalMaximums.absoluteSampleIndex(row) - shiftToSamples - streamPosition;
+                if (index >= reusedFrom && index < reusedTo) {
+                    newFinalLocalMaximums.addRow(finalLocalMaximums, row);
+                    finalLocalMaximums.readRow(row, finalResultCopy);
+                    addLocalMaximum(finalResultCopy.copyFinalResult(this, finalResultCopy));
+                }
+            }
+        }
+        analyseLocalMaximumsInChunks(reusedTo, averagedCount, aperture, wideAperture);
+        if (isStreaming()) {
+            if (reusingFinalResults) {
+                final LocalMaximumTable temp = finalLocalMaximums;
+                finalLocalMaximums = newFinalLocalMaximums;
+                newFinalLocalMaximums = temp;
+            }
+            finalResultsFrom = streamPosition + finalFromIndex;
+            finalResultsTo = streamPosition + finalToIndex;
+        }
+    }
+
+    private void analyseLocalMaximumsInChunks(int fromIndex, int toIndex, int aperture, int wideAperture) {
+        final int numberOfChunks = (int) Math.min(parallelism,
+            Math.max((long) toIndex - (long) fromIndex, 0) / MIN_PARALLEL_CHUNK_LENGTH);
+        if (numberOfChunks <= 1) {
+            analyseLocalMaximums(analysedInfo, fromIndex, toIndex, aperture, wideAperture);
+            return;
+        }
+        rangeMinimumFinder.prepare();
+        averageAllImpulseSegments();
+        // - will be shared between all chunks
+        final AudioAnalyser[] workers = new AudioAnalyser[numberOfChunks];
+        final List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (int k = 0; k < numberOfChunks; k++) {
+            final AudioAnalyser worker = newWorker(wideAperture / 2 + 1);
+            final int chunkFrom = (int) (fromIndex + (long) (toIndex - fromIndex) * k / numberOfChunks);
+            final int chunkTo = (int) (fromIndex + (long) (toIndex - fromIndex) * (k + 1) / numberOfChunks);
+            workers[k] = worker;
+            tasks.add(ForkJoinTask.adapt(() -> worker.analyseLocalMaximums(
+                new AudioLocalMaximumApertureInfo(), chunkFrom, chunkTo, aperture, wideAperture)));
+            // - every chunk uses all necessary samples outside it (the halo) directly from the shared arrays
+        }
+        forkJoinPool.submit(() -> ForkJoinTask.invokeAll(tasks)).join();
+        for (AudioAnalyser worker : workers) {
+            for (int row = 0, n = worker.localMaximumTable.size(); row < n; row++) {
+                worker.localMaximumTable.readRow(row, analysedInfo);
+                addLocalMaximum(analysedInfo);
+            }
+            newFinalLocalMaximums.addAll(worker.newFinalLocalMaximums);
+            numberOfSkippedBlocks += worker.numberOfSkippedBlocks;
+            numberOfScannedBlocks += worker.numberOfScannedBlocks;
+        }
+    }
+
+    // Returns an analyser, which shares averaged arrays and other read-only data with this one,
+    // but has its own work memory: it can analyse any part of averagedSquare in another thread
+    private AudioAnalyser newWorker(int workMemoryLength) {
+        final AudioAnalyser worker = new AudioAnalyser(singleSampleDuration);
+        worker.copyParameters(this);
+        worker.count = count;
+        worker.streamPosition = streamPosition;
+        worker.maxAbsoluteSignal = maxAbsoluteSignal;
+        worker.typicalAveragedSignal = typicalAveragedSignal;
+        worker.averagedCount = averagedCount;
+        worker.averagedSquare = averagedSquare;
+        worker.averagedImpulseCount = averagedImpulseCount;
+        worker.averagedImpulseSquare = averagedImpulseSquare;
+        worker.workMemory = new double[Math.min(workMemoryLength, averagedCount)];
+        worker.rangeMinimumFinder = rangeMinimumFinder;
+        worker.impulseThresholdFinder = impulseThresholdFinder;
+        worker.averagedBlockMax = averagedBlockMax;
+        worker.slidingPercentileFinder.reset(averagedSquare, averagedCount);
+        worker.finalFromIndex = finalFromIndex;
+        worker.finalToIndex = finalToIndex;
+        return worker;
+    }
+
+    // Copies all customizable parameters
+    void copyParameters(AudioAnalyser other) {
+        if (other.singleSampleDuration != singleSampleDuration) {
+            throw new IllegalArgumentException("Different sample durations");
+        }
+        copyParametersExceptDuration(other);
+    }
+
+    // The same for analysers with different sample durations (apertures are specified in seconds)
+    void copyParametersExceptDuration(AudioAnalyser other) {
+        this.globalAmplitudeOfLoudSound = other.globalAmplitudeOfLoudSound;
+        this.typicalSignalPercentile = other.typicalSignalPercentile;
+        this.averagingAperture = other.averagingAperture;
+        this.averagingImpulseAperture = other.averagingImpulseAperture;
+        this.localMaxAperture = other.localMaxAperture;
+        this.minRatioOfGoodMaximumAndTypicalSignal = other.minRatioOfGoodMaximumAndTypicalSignal;
+        this.localMaxWideAperture = other.localMaxWideAperture;
+        this.localMaxLowSignalPercentile = other.localMaxLowSignalPercentile;
+        this.minRatioOfGoodMaximumAndLowSignal = other.minRatioOfGoodMaximumAndLowSignal;
+        this.maxImpulseDuration = other.maxImpulseDuration;
+        this.minSilenceNearImpulseDuration = other.minSilenceNearImpulseDuration;
+        this.ratioOfImpulseAndSilence = other.ratioOfImpulseAndSilence;
+        this.maxDurationBetweenSequentialGoodMaximums = other.maxDurationBetweenSequentialGoodMaximums;
+        this.percentileAlgorithm = other.percentileAlgorithm;
+        this.maxPercentileHistogramError = other.maxPercentileHistogramError;
+        this.slidingLowSignalPercentile = other.slidingLowSignalPercentile;
+        this.reusingFinalResults = other.reusingFinalResults;
+        this.skippingQuietBlocks = other.skippingQuietBlocks;
+        this.decimation = other.decimation;
+    }
+
+    // Returns false if decimation is not used; in other case prepares decimatedAnalyser for analysis
+    // of the energy envelope of the current samples
+    private boolean prepareDecimatedAnalyser() {
+        decimatedResults = decimation > 1 && !isStreaming();
+        if (!decimatedResults) {
+            return false;
+        }
+        final double decimatedSampleDuration = singleSampleDuration * decimation;
+        if (decimatedAnalyser == null || decimatedAnalyser.singleSampleDuration != decimatedSampleDuration) {
+            decimatedAnalyser = new AudioAnalyser(decimatedSampleDuration);
+            decimatedAnalyser.setCollectingLocalMaximums(false);
+            decimatedAnalyser.setDetectionListener(new DetectionListener() {
+                @Override
+                public void goodLocalMaximumFound(AudioLocalMaximumApertureInfo info) {
+                    addDecimatedLocalMaximum(info);
+                }
+
+                @Override
+                public void localMaximumRejected(AudioLocalMaximumApertureInfo info) {
+                    addDecimatedLocalMaximum(info);
+                }
+            });
+        }
+        final AudioAnalyser envelope = decimatedAnalyser;
+        envelope.copyParametersExceptDuration(this);
+        envelope.decimation = 1;
+        envelope.parallelism = parallelism;
+        envelope.forkJoinPool = forkJoinPool;
+        final int envelopeLength = count / decimation;
+        envelope.amplitudeSquare = allocateIfNecessary(envelope.amplitudeSquare, envelopeLength);
+        envelope.workMemory = allocateIfNecessary(envelope.workMemory, envelopeLength);
+        envelope.count = AnalysingTools.blockMeans(envelope.amplitudeSquare, amplitudeSquare, count, decimation);
+        envelope.energySumActual = false;
+        // - amplitudeSamples of the envelope are not used
+        return true;
+    }
+
+    private void addDecimatedLocalMaximum(AudioLocalMaximumApertureInfo info) {
+        addLocalMaximum(decimatedResultCopy.copyDecimatedResult(this, info, decimation));
+    }
+
+    private void analyseLocalMaximums(
+        AudioLocalMaximumApertureInfo info,
+        int fromIndex,
+        int toIndex,
+        int aperture,
+        int wideAperture)
+    {
+        final int apertureHalf = aperture / 2;
+        fromIndex = Math.max(fromIndex, apertureHalf);
+        toIndex = Math.min(toIndex, averagedCount - apertureHalf);
+        final double minAmplitude = skippingQuietBlocks && !reusingFinalResults ?
+            Math.max(globalAmplitudeOfLoudSound, typicalAveragedSignal * minRatioOfGoodMaximumAndTypicalSignal) :
+            globalAmplitudeOfLoudSound;
+        // - local maximums with less amplitude are not stored or rejected at the beginning of analyseSample
+        for (int k = fromIndex; k < toIndex; ) {
+            final int blockEnd = Math.min(((k >> QUIET_BLOCK_LOG) + 1) << QUIET_BLOCK_LOG, toIndex);
+            if (Math.sqrt(averagedBlockMax[k >> QUIET_BLOCK_LOG]) < minAmplitude) {
+                numberOfSkippedBlocks++;
+                k = blockEnd;
+                continue;
+            }
+            numberOfScannedBlocks++;
+            int end = blockEnd;
+            while (end < toIndex && !(Math.sqrt(averagedBlockMax[end >> QUIET_BLOCK_LOG]) < minAmplitude)) {
+                numberOfScannedBlocks++;
+                end = Math.min(end + (1 << QUIET_BLOCK_LOG), toIndex);
+            }
+            analyseLocalMaximumsInRange(info, k, end, aperture, wideAperture);
+            k = end;
+        }
+    }
+
+    private void analyseLocalMaximumsInRange(
+        AudioLocalMaximumApertureInfo info,
+        int fromIndex,
+        int toIndex,
+        int aperture,
+        int wideAperture)
+    {
+        final int apertureHalf = aperture / 2;
+        localMaximumDetector.findLocalMaximums(averagedSquare, fromIndex, toIndex, apertureHalf);
+        // - O(averagedCount) instead of checking the whole aperture for every index
+        for (int k = 0, n = localMaximumDetector.numberOfLocalMaximums(); k < n; k++) {
+            final int index = localMaximumDetector.localMaximum(k);
             final int impulseIndex = index + (averagedImpulseCount - averagedCount) / 2;
-            info.analyseSample(this, index, impulseIndex, aperture, wideAperture);
+            final boolean finalResult = reusingFinalResults && index >= finalFromIndex && index < finalToIndex;
+            info.analyseSample(this, index, impulseIndex, aperture, wideAperture, false, !finalResult);
             if (info.isLocalMaximum()) {
-                final AudioLocalMaximumApertureInfo clone = info.clone();
-                allLocalMaximums.add(clone);
-                if (info.isGoodLocalMaximum()) {
-                    goodLocalMaximums.add(clone);
-                    // no problems to share the same instance between two lists:
-                    // it cannot be modified outside this package
+                if (finalResult) {
+                    newFinalLocalMaximums.add(info);
+                    addLocalMaximum(info.copyFinalResult(this, finalResultCopy));
+                } else {
+                    addLocalMaximum(info);
                 }
             }
         }
     }
 
-    public void postprocessFoundMaximums() {
-        int maxCount = 0;
-        int totalCount = 0;
-        int count = 1;
-        for (int k = 1, n = goodLocalMaximums.size(); k < n; k++) {
-            double distance =
-                goodLocalMaximums.get(k).getLocalMaximumSampleTimeStamp()
-                - goodLocalMaximums.get(k - 1).getLocalMaximumSampleTimeStamp();
-            if (distance <= maxDurationBetweenSequentialGoodMaximums) {
-                if (count == 1) {
-                    // start of the series
-                    totalCount++;
-                }
-                count++;
-                totalCount++;
+    private void findAveragedBlockMaximums() {
+        numberOfSkippedBlocks = 0;
+        numberOfScannedBlocks = 0;
+        final int numberOfBlocks = (averagedCount + (1 << QUIET_BLOCK_LOG) - 1) >> QUIET_BLOCK_LOG;
+        if (averagedBlockMax.length < numberOfBlocks) {
+            averagedBlockMax = new double[numberOfBlocks];
+        }
+        for (int block = 0, k = 0; block < numberOfBlocks; block++, k += 1 << QUIET_BLOCK_LOG) {
+            averagedBlockMax[block] = AnalysingTools.maxValue(
+                averagedSquare, k, Math.min(k + (1 << QUIET_BLOCK_LOG), averagedCount));
+        }
+    }
+
+    // For MultiProfileAudioAnalyser: this analyser will use the samples, squares and energy sums of the source
+    // without copying (until the next setSamples or startStreaming call); the source must be preprocessed
+    // before this analyser
+    void shareSamples(AudioAnalyser source) {
+        if (source.isStreaming()) {
+            throw new IllegalArgumentException("Cannot share samples in streaming mode");
+        }
+        stopSharing();
+        source.buildEnergySum();
+        this.streamingCapacity = 0;
+        this.streamingOffset = 0;
+        this.streamPosition = 0;
+        this.count = source.count;
+        this.amplitudeSamples = source.amplitudeSamples;
+        this.amplitudeSquare = source.amplitudeSquare;
+        this.energySum.copyScale(source.energySum);
+        this.energySumActual = true;
+        this.samplesSource = source;
+        this.workMemory = allocateIfNecessary(this.workMemory, count);
+    }
+
+    // For ParameterSweep: prepares the samples for sharing by analysers, working in parallel threads
+    // (shareSamples and preprocess of such analysers only read this analyser)
+    void prepareSharedSamples() {
+        if (isStreaming()) {
+            throw new IllegalStateException("Cannot share samples in streaming mode");
+        }
+        buildEnergySum();
+        this.maxAbsoluteSignal = Math.sqrt(AnalysingTools.maxValue(amplitudeSquare, count));
+    }
+
+    // For ParameterSweep: preprocess() and preparing the impulse averaged array, without searching
+    // local maximums; after this, the analyser can be a source for setAveragingSources
+    void preprocessAveragingSource() {
+        preprocess();
+        if (!decimatedResults) {
+            averageImpulse();
+        }
+    }
+
+    // For MultiProfileAudioAnalyser: sources of averaged arrays for following preprocess() and analyze()
+    // (null means own arrays); requires shareSamples(), and the sources must have the same samples
+    // and the same apertures
+    void setAveragingSources(AudioAnalyser averagingSource, AudioAnalyser impulseAveragingSource) {
+        if (samplesSource == null && (averagingSource != null || impulseAveragingSource != null)) {
+            throw new IllegalStateException("Samples are not shared");
+        }
+        this.averagingSource = averagingSource;
+        this.impulseAveragingSource = impulseAveragingSource;
+    }
+
+    AudioAnalyser samplesSource() {
+        return samplesSource;
+    }
+
+    AudioAnalyser averagingSource() {
+        return averagingSource;
+    }
+
+    AudioAnalyser impulseAveragingSource() {
+        return impulseAveragingSource;
+    }
+
+    // Returns own arrays instead of shared ones: they will be allocated again when necessary
+    private void stopSharing() {
+        if (samplesSource != null) {
+            amplitudeSamples = new double[0];
+            amplitudeSquare = new double[0];
+            energySum = new EnergySlidingSum();
+            energySumActual = false;
+            samplesSource = null;
+        }
+        averagingSource = null;
+        impulseAveragingSource = null;
+        releaseSharedAveraging();
+        releaseSharedImpulseAveraging();
+    }
+
+    private void releaseSharedAveraging() {
+        if (averagedSquareShared) {
+            averagedSquare = new double[0];
+            averagedSquareShared = false;
+        }
+        if (rangeMinimumFinderShared) {
+            rangeMinimumFinder = new RangeMinimumFinder();
+            rangeMinimumFinderShared = false;
+        }
+    }
+
+    private void releaseSharedImpulseAveraging() {
+        if (averagedImpulseSquareShared) {
+            averagedImpulseSquare = new double[0];
+            impulseSegmentReady = new boolean[0];
+            impulseThresholdFinder = new ThresholdCrossingFinder();
+            averagedImpulseSquareShared = false;
+        }
+    }
+
+    private boolean samePercentileSettings(AudioAnalyser other) {
+        return other.typicalSignalPercentile == typicalSignalPercentile
+            && other.percentileAlgorithm == percentileAlgorithm
+            && other.maxPercentileHistogramError == maxPercentileHistogramError;
+    }
+
+    void clearLocalMaximums() {
+        localMaximumTable.clear();
+        allLocalMaximums = null;
+        goodLocalMaximums = null;
+    }
+
+    // Copies the information into localMaximumTable and passes it to the listener: the object can be reused
+    void addLocalMaximum(AudioLocalMaximumApertureInfo info) {
+        if (collectingLocalMaximums) {
+            localMaximumTable.add(info);
+        }
+        if (detectionListener != null) {
+            if (info.isGoodLocalMaximum()) {
+                detectionListener.goodLocalMaximumFound(info);
             } else {
-                count = 1;
+                detectionListener.localMaximumRejected(info);
+            }
+        }
+    }
+
+    // Results for averaged index i are final (will not change in the following intervals), if all samples,
+    // which can be used while analysing it, i - leftReach..i + rightReach, are inside the analysed interval.
+    // Final results are found without comparison with typicalAveragedSignal, which is performed while every
+    // following analyze() call (see AudioLocalMaximumApertureInfo.copyFinalResult).
+    private void findFinalResultsRange(int aperture, int wideAperture, int reusedFrom, int reusedTo) {
+        final int impulseShift = (averagedImpulseCount - averagedCount) / 2;
+        final int leftReach = finalResultsLeftReach(impulseShift);
+        final int rightReach = finalResultsRightReach(
+            impulseShift, getAveragingApertureLength(), getAveragingImpulseApertureLength());
+        finalFromIndex = streamPosition == 0 ? 0 : leftReach;
+        // - at the stream start, results cannot be improved by previous samples
+        finalToIndex = Math.max(finalFromIndex, count - rightReach);
+        if (reusedTo > reusedFrom && reusedFrom <= finalFromIndex && reusedTo >= finalFromIndex) {
+            // reused results, which are now too close to the interval start, remain final
+            finalFromIndex = reusedFrom;
+            finalToIndex = Math.max(finalToIndex, reusedTo);
+        }
+    }
+
+    private int finalResultsLeftReach(int impulseShift) {
+        return Math.max(averagedReach(), impulseReach() - impulseShift);
+    }
+
+    private int finalResultsRightReach(int impulseShift, int aperture, int impulseAperture) {
+        return Math.max(
+            averagedReach() + aperture - 1,
+            impulseShift + impulseReach() + impulseAperture - 1);
+    }
+
+    private int averagedReach() {
+        return Math.max(getLocalMaxApertureLength() / 2, getLocalMaxWideApertureLength() / 2);
+    }
+
+    private int impulseReach() {
+        return (int) (averagingAperture / singleSampleDuration) / 2
+            + (int) (maxImpulseDuration / singleSampleDuration)
+            + (int) (minSilenceNearImpulseDuration / singleSampleDuration) + 1;
+        // - see AudioLocalMaximumApertureInfo.findNearestImpulse and shortImpulse
+    }
+
+    // For ChunkedAudioAnalyser: number of samples before and after an averaged index, which are necessary
+    // for its final result (an upper bound for the full streaming capacity); new chunks of N samples
+    // do not leave gaps between final results of sequential intervals if the capacity >= N + this margin
+    int finalResultsMargin() {
+        final int aperture = rawAveragingApertureLength();
+        final int impulseAperture = rawAveragingImpulseApertureLength();
+        final int impulseShift = (aperture - impulseAperture) / 2;
+        return finalResultsLeftReach(impulseShift)
+            + finalResultsRightReach(impulseShift, aperture, impulseAperture);
+    }
+
+    // For ChunkedAudioAnalyser: absolute averaged index, before which the results of the last analyze() call
+    // are final (in streaming mode)
+    long finalResultsTo() {
+        return finalResultsTo;
+    }
+
+    // For ChunkedAudioAnalyser: sets the results of preprocess(), found for the whole recording,
+    // instead of calling preprocess() for the current interval
+    void setPreprocessingResults(double maxAbsoluteSignal, double typicalAveragedSignal) {
+        this.maxAbsoluteSignal = maxAbsoluteSignal;
+        this.typicalAveragedSignal = typicalAveragedSignal;
+    }
+
+    // Fills and returns the same array while every call (without allocation)
+    private double[] analysisParameters() {
+        if (analysisParameters == null) {
+            analysisParameters = new double[NUMBER_OF_ANALYSIS_PARAMETERS];
+        }
+        final double[] result = analysisParameters;
+        result[0] = getAveragingApertureLength();
+        result[1] = getAveragingImpulseApertureLength();
+        result[2] = getLocalMaxApertureLength();
+        result[3] = getLocalMaxWideApertureLength();
+        result[4] = averagingAperture;
+        result[5] = globalAmplitudeOfLoudSound;
+        result[6] = minRatioOfGoodMaximumAndTypicalSignal;
+        result[7] = localMaxLowSignalPercentile;
+        result[8] = minRatioOfGoodMaximumAndLowSignal;
+        result[9] = maxImpulseDuration;
+        result[10] = minSilenceNearImpulseDuration;
+        result[11] = ratioOfImpulseAndSilence;
+        result[12] = percentileAlgorithm.ordinal();
+        result[13] = maxPercentileHistogramError;
+        return result;
+    }
+
+    public void postprocessFoundMaximums() {
+        final SequentialGoodMaximumsTracker tracker = new SequentialGoodMaximumsTracker();
+        for (LocalMaximumTable.Cursor info = localMaximumTable.cursor(); info.nextGood(); ) {
+            tracker.addGoodMaximum(
+                info.getAbsoluteSampleIndex(),
+                info.getLocalMaximumSampleTimeStamp(),
+                maxDurationBetweenSequentialGoodMaximums);
+        }
+        this.maxNumberOfSequentialGoodMaximums = tracker.maxNumberOfSequentialGoodMaximums();
+        this.totalNumberOfSequentialGoodMaximums = tracker.totalNumberOfSequentialGoodMaximums();
+    }
+
+    // Streaming analogue of postprocessFoundMaximums: counts series of good maximums in all intervals since
+    // startStreaming, adding only results, which were not added by previous calls and will not change
+    // in following intervals. Requires O(number of new good maximums) operations.
+    public void postprocessNewFoundMaximums() {
+        postprocessNewFoundMaximums(false);
+    }
+
+    // endOfStream = true means that there will be no more samples: all results are added
+    public void postprocessNewFoundMaximums(boolean endOfStream) {
+        if (!isStreaming()) {
+            throw new IllegalStateException("Streaming mode is not started");
+        }
+        final int shiftToSamples = getAveragingApertureLength() / 2;
+        final long lastAdded = sequentialGoodMaximumsTracker.lastAbsoluteSampleIndex();
+        int k = localMaximumTable.size();
+        while (k > 0 && (!localMaximumTable.isGoodLocalMaximum(k - 1)
+            || localMaximumTable.absoluteSampleIndex(k - 1) > lastAdded))
+        {
+            k--;
+        }
+        for (int n = localMaximumTable.size(); k < n; k++) {
+            if (!localMaximumTable.isGoodLocalMaximum(k)) {
+                continue;
+            }
+            final long index = localMaximumTable.absoluteSampleIndex(k);
+            if (!endOfStream && index - shiftToSamples >= finalResultsTo) {
+                break;
             }
-            maxCount = Math.max(maxCount, count);
+            sequentialGoodMaximumsTracker.addGoodMaximum(
+                index, index * singleSampleDuration, maxDurationBetweenSequentialGoodMaximums);
         }
-        this.maxNumberOfSequentialGoodMaximums = maxCount == 1 ? 0 : maxCount;
-        this.totalNumberOfSequentialGoodMaximums = totalCount;
+        this.maxNumberOfSequentialGoodMaximums = sequentialGoodMaximumsTracker.maxNumberOfSequentialGoodMaximums();
+        this.totalNumberOfSequentialGoodMaximums = sequentialGoodMaximumsTracker.totalNumberOfSequentialGoodMaximums();
+    }
+
+    // Element accessors for AudioLocalMaximumApertureInfo (can be overridden for another storage of averaged values)
+    double averagedSquareAt(int averagedIndex) {
+        return averagedSquare[averagedIndex];
+    }
+
+    double averagedImpulseSquareAt(int averagedImpulseIndex) {
+        if (lazyImpulseAveraging && !impulseSegmentReady[averagedImpulseIndex >> impulseSegmentLog]) {
+            averageImpulseSegment(averagedImpulseIndex >> impulseSegmentLog);
+        }
+        return averagedImpulseSquare[averagedImpulseIndex];
+    }
+
+    // Threshold scans in averagedImpulseSquare[fromIndex..toIndex-1]: return -1 if there is no such index
+    int averagedImpulseFirstGreater(int fromIndex, int toIndex, double threshold) {
+        averageImpulseSegments(fromIndex, toIndex);
+        return impulseThresholdFinder.firstGreater(fromIndex, toIndex, threshold);
+    }
+
+    int averagedImpulseFirstLess(int fromIndex, int toIndex, double threshold) {
+        averageImpulseSegments(fromIndex, toIndex);
+        return impulseThresholdFinder.firstLess(fromIndex, toIndex, threshold);
+    }
+
+    int averagedImpulseLastLess(int fromIndex, int toIndex, double threshold) {
+        averageImpulseSegments(fromIndex, toIndex);
+        return impulseThresholdFinder.lastLess(fromIndex, toIndex, threshold);
+    }
+
+    // x >= threshold is equivalent to x > Math.nextDown(threshold)
+    int averagedImpulseFirstNotLess(int fromIndex, int toIndex, double threshold) {
+        averageImpulseSegments(fromIndex, toIndex);
+        return impulseThresholdFinder.firstGreater(fromIndex, toIndex, Math.nextDown(threshold));
+    }
+
+    int averagedImpulseLastNotLess(int fromIndex, int toIndex, double threshold) {
+        averageImpulseSegments(fromIndex, toIndex);
+        return impulseThresholdFinder.lastGreater(fromIndex, toIndex, Math.nextDown(threshold));
     }
 
     double averagedMin(int minIndexInAveragedSquare, int maxIndexInAveragedSquare) {
         minIndexInAveragedSquare = Math.max(minIndexInAveragedSquare, 0);
         maxIndexInAveragedSquare = Math.min(maxIndexInAveragedSquare, averagedCount - 1);
-        double result = Double.POSITIVE_INFINITY;
-        for (int k = minIndexInAveragedSquare; k <= maxIndexInAveragedSquare; k++) {
-            if (averagedSquare[k] < result) {
-                result = averagedSquare[k];
-            }
+        if (minIndexInAveragedSquare > maxIndexInAveragedSquare) {
+            return Double.POSITIVE_INFINITY;
         }
-        return result;
+        return rangeMinimumFinder.min(minIndexInAveragedSquare, maxIndexInAveragedSquare);
     }
 
     double averagedPercentile(int minIndexInAveragedSquare, int maxIndexInAveragedSquare, double level) {
         minIndexInAveragedSquare = Math.max(minIndexInAveragedSquare, 0);
         maxIndexInAveragedSquare = Math.min(maxIndexInAveragedSquare, averagedCount - 1);
-        return AnalysingTools.percentile(
-            averagedSquare,
+        if (slidingLowSignalPercentile) {
+            return slidingPercentileFinder.percentile(
+                minIndexInAveragedSquare, maxIndexInAveragedSquare + 1, level);
+        }
+        return percentile(
             minIndexInAveragedSquare, maxIndexInAveragedSquare - minIndexInAveragedSquare + 1,
-            workMemory,
             level);
     }
 
+    // Uses workMemory or histogramWorkMemory
+    private double percentile(int offsetInAveragedSquare, int countInAveragedSquare, double level) {
+        switch (percentileAlgorithm) {
+            case SORTING:
+                return AnalysingTools.percentile(
+                    averagedSquare, offsetInAveragedSquare, countInAveragedSquare, workMemory, level);
+            case SELECTION:
+                return AnalysingTools.percentileBySelection(
+                    averagedSquare, offsetInAveragedSquare, countInAveragedSquare, workMemory, level);
+            case HISTOGRAM:
+                if (histogramWorkMemory.length < AnalysingTools.HISTOGRAM_MAX_LENGTH) {
+                    histogramWorkMemory = new int[AnalysingTools.HISTOGRAM_MAX_LENGTH];
+                }
+                return AnalysingTools.percentileByHistogram(
+                    averagedSquare, offsetInAveragedSquare, countInAveragedSquare, histogramWorkMemory,
+                    level, maxPercentileHistogramError);
+            default:
+                throw new AssertionError("Unknown percentile algorithm " + percentileAlgorithm);
+        }
+    }
+
     private void average() {
         int aperture = getAveragingApertureLength();
         this.averagedCount = AnalysingTools.averageCount(count, aperture);
-        this.averagedSquare = allocateIfNecessary(this.averagedSquare, this.averagedCount);
-        AnalysingTools.average(averagedSquare, amplitudeSquare, count, aperture);
+        if (isStreaming()) {
+            prepareStreamingBuffers();
+            // - averaged values are already calculated by appendSamples
+        } else if (averagingSource != null) {
+            this.averagedSquare = averagingSource.averagedSquare;
+            this.averagedSquareShared = true;
+        } else {
+            releaseSharedAveraging();
+            this.averagedSquare = allocateIfNecessary(this.averagedSquare, this.averagedCount);
+            buildEnergySum();
+            energySum.average(averagedSquare, aperture);
+        }
+        slidingPercentileFinder.reset(averagedSquare, averagedCount);
+        if (averagingSource != null
+            && averagingSource.getLocalMaxWideApertureLength() == getLocalMaxWideApertureLength())
+        {
+            this.rangeMinimumFinder = averagingSource.rangeMinimumFinder;
+            this.rangeMinimumFinderShared = true;
+        } else {
+            if (rangeMinimumFinderShared) {
+                this.rangeMinimumFinder = new RangeMinimumFinder();
+                this.rangeMinimumFinderShared = false;
+            }
+            rangeMinimumFinder.reset(averagedSquare, averagedCount, getLocalMaxWideApertureLength() / 2 + 1);
+            // - averagedMin is usually called for halves of the wide aperture
+        }
     }
 
     private void averageImpulse() {
         int aperture = getAveragingImpulseApertureLength();
         this.averagedImpulseCount = AnalysingTools.averageCount(count, aperture);
-        this.averagedImpulseSquare = allocateIfNecessary(this.averagedImpulseSquare, this.averagedImpulseCount);
-        AnalysingTools.average(averagedImpulseSquare, amplitudeSquare, count, aperture);
+        if (isStreaming()) {
+            this.lazyImpulseAveraging = false;
+            prepareStreamingBuffers();
+            impulseThresholdFinder.reset(averagedImpulseSquare, averagedImpulseCount);
+            impulseThresholdFinder.update(0, averagedImpulseCount);
+        } else if (impulseAveragingSource != null) {
+            this.averagedImpulseSquare = impulseAveragingSource.averagedImpulseSquare;
+            this.impulseSegmentReady = impulseAveragingSource.impulseSegmentReady;
+            this.impulseThresholdFinder = impulseAveragingSource.impulseThresholdFinder;
+            this.impulseAveragingAperture = impulseAveragingSource.impulseAveragingAperture;
+            this.impulseSegmentLog = impulseAveragingSource.impulseSegmentLog;
+            this.lazyImpulseAveraging = true;
+            // - segments, calculated by this analyser or by the source, are ready for both
+            this.averagedImpulseSquareShared = true;
+        } else {
+            releaseSharedImpulseAveraging();
+            this.averagedImpulseSquare = allocateIfNecessary(this.averagedImpulseSquare, this.averagedImpulseCount);
+            impulseThresholdFinder.reset(averagedImpulseSquare, averagedImpulseCount);
+            startLazyImpulseAveraging(aperture);
+            // - averagedImpulseSquare is used only near local maximums, which passed the first checks
+            // (see AudioLocalMaximumApertureInfo.shortImpulse): usually it is a small part of the interval
+        }
+    }
+
+    private void startLazyImpulseAveraging(int aperture) {
+        buildEnergySum();
+        this.impulseAveragingAperture = aperture;
+        this.impulseSegmentLog = Math.min(30, Math.max(MIN_IMPULSE_SEGMENT_LOG,
+            34 - Integer.numberOfLeadingZeros(Math.max(aperture - 1, 1))));
+        // - segment >= 4 * aperture: every segment requires O(aperture) operations for the first sum
+        final int numberOfSegments = (int) (((long) averagedImpulseCount + (1 << impulseSegmentLog) - 1)
+            >> impulseSegmentLog);
+        if (impulseSegmentReady.length < numberOfSegments) {
+            impulseSegmentReady = new boolean[numberOfSegments];
+        } else {
+            Arrays.fill(impulseSegmentReady, 0, numberOfSegments, false);
+        }
+        this.lazyImpulseAveraging = true;
+    }
+
+    private void averageImpulseSegments(int fromIndex, int toIndex) {
+        if (lazyImpulseAveraging && fromIndex < toIndex) {
+            for (int segment = fromIndex >> impulseSegmentLog, last = (toIndex - 1) >> impulseSegmentLog;
+                 segment <= last; segment++) {
+                if (!impulseSegmentReady[segment]) {
+                    averageImpulseSegment(segment);
+                }
+            }
+        }
+    }
+
+    private void averageImpulseSegment(int segment) {
+        final int from = segment << impulseSegmentLog;
+        final int to = (int) Math.min((long) from + (1 << impulseSegmentLog), averagedImpulseCount);
+        energySum.average(averagedImpulseSquare, from, to, impulseAveragingAperture);
+        impulseThresholdFinder.update(from, to);
+        impulseSegmentReady[segment] = true;
+    }
+
+    // Calculates all segments, which were not calculated yet (necessary before sharing the array with workers)
+    private double[] averageAllImpulseSegments() {
+        averageImpulseSegments(0, averagedImpulseCount);
+        lazyImpulseAveraging = false;
+        return averagedImpulseSquare;
+    }
+
+    private void buildEnergySum() {
+        if (!energySumActual) {
+            energySum.build(amplitudeSquare, count);
+            energySumActual = true;
+        }
+    }
+
+    private void prepareStreamingBuffers() {
+        if (streamingAveragingAperture != rawAveragingApertureLength()
+            || streamingAveragingImpulseAperture != rawAveragingImpulseApertureLength())
+        {
+            restartStreamingAveraging();
+        } else {
+            compactStreamingBuffers();
+        }
     }
 
     private static double[] allocateIfNecessary(double[] array, int len) {
@@ -3,28 +3,31 @@ package com.envionsoftware.sounds.analysis;
 import java.util.Locale;
 
 public class AudioLocalMaximumApertureInfo implements Cloneable {
-    private boolean localMaximum;
-    private boolean goodLocalMaximum;
-    private boolean tooLowRatioToTypicalSignal;
-    private boolean tooLowRatioToLowSignal;
-    private boolean cannotFindShortImpulse;
-    private boolean shortImpulse;
-    private boolean tooShortSilenceBeforeImpulse;
-    private boolean tooShortSilenceAfterImpulse;
-    private int localMaximumSampleIndex;
-    private double localMaximumSampleTimeStamp;
-    private double maxAveragedAbsoluteAmplitude;
+    // Fields are package-private for LocalMaximumTable
+    boolean localMaximum;
+    boolean goodLocalMaximum;
+    boolean tooLowRatioToTypicalSignal;
+    boolean tooLowRatioToLowSignal;
+    boolean cannotFindShortImpulse;
+    boolean shortImpulse;
+    boolean tooShortSilenceBeforeImpulse;
+    boolean tooShortSilenceAfterImpulse;
+    int localMaximumSampleIndex;
+    double localMaximumSampleTimeStamp;
+    long absoluteSampleIndex;
+    // - localMaximumSampleIndex + AudioAnalyser.streamPosition()
+    double maxAveragedAbsoluteAmplitude;
     // - absolute value of current sample
-    private double minAveragedAbsoluteAmplitude = Double.NaN;
+    double minAveragedAbsoluteAmplitude = Double.NaN;
 
-    private double lowPercentileAveragedAbsoluteAmplitude = Double.NaN;
-    private int shortImpulseLeft;
-    private int shortImpulseRight;
-    private double shortImpulseAbsoluteAmplitude = Double.NaN;
+    double lowPercentileAveragedAbsoluteAmplitude = Double.NaN;
+    int shortImpulseLeft;
+    int shortImpulseRight;
+    double shortImpulseAbsoluteAmplitude = Double.NaN;
 
     // Following 2 values for toString() method only (debugging needs):
-    private double wideApertureHalfDuration;
-    private double impulseDuration;
+    double wideApertureHalfDuration;
+    double impulseDuration;
 
     AudioLocalMaximumApertureInfo() {
         reset();
@@ -38,6 +41,23 @@ public class AudioLocalMaximumApertureInfo implements Cloneable {
         return goodLocalMaximum;
     }
 
+    // Reasons, why the local maximum is not good:
+    public boolean isTooLowRatioToTypicalSignal() {
+        return tooLowRatioToTypicalSignal;
+    }
+
+    public boolean isTooLowRatioToLowSignal() {
+        return tooLowRatioToLowSignal;
+    }
+
+    public boolean isTooShortSilenceBeforeImpulse() {
+        return tooShortSilenceBeforeImpulse;
+    }
+
+    public boolean isTooShortSilenceAfterImpulse() {
+        return tooShortSilenceAfterImpulse;
+    }
+
     public int getLocalMaximumSampleIndex() {
         return localMaximumSampleIndex;
     }
@@ -46,6 +66,12 @@ public class AudioLocalMaximumApertureInfo implements Cloneable {
         return localMaximumSampleTimeStamp;
     }
 
+    // Index of the local maximum since AudioAnalyser.startStreaming (equal to getLocalMaximumSampleIndex()
+    // in usual mode): it does not change while analysing following intervals in streaming mode
+    public long getAbsoluteSampleIndex() {
+        return absoluteSampleIndex;
+    }
+
     public double getMaxAveragedAbsoluteAmplitude() {
         return maxAveragedAbsoluteAmplitude;
     }
@@ -88,6 +114,35 @@ public class AudioLocalMaximumApertureInfo implements Cloneable {
         }
     }
 
+    // For results, found without checking typical signal: stores in the result a copy with sample indexes,
+    // corresponding to the current streamPosition of the analyser, and with the check of its current typical signal
+    AudioLocalMaximumApertureInfo copyFinalResult(AudioAnalyser a, AudioLocalMaximumApertureInfo result) {
+        if (result != this) {
+            result.copyFrom(this);
+        }
+        final int shift = (int) (absoluteSampleIndex - a.streamPosition() - localMaximumSampleIndex);
+        result.localMaximumSampleIndex += shift;
+        result.localMaximumSampleTimeStamp = a.sampleTimeStamp(result.localMaximumSampleIndex);
+        if (shortImpulse) {
+            result.shortImpulseLeft += shift;
+            result.shortImpulseRight += shift;
+        }
+        if (a.typicalAveragedSignal() * a.getMinRatioOfGoodMaximumAndTypicalSignal() > maxAveragedAbsoluteAmplitude) {
+            // the same state as after return from analyseSample
+            result.goodLocalMaximum = false;
+            result.tooLowRatioToTypicalSignal = true;
+            result.tooLowRatioToLowSignal = false;
+            result.cannotFindShortImpulse = false;
+            result.shortImpulse = false;
+            result.tooShortSilenceBeforeImpulse = result.tooShortSilenceAfterImpulse = false;
+            result.minAveragedAbsoluteAmplitude = Double.NaN;
+            result.lowPercentileAveragedAbsoluteAmplitude = Double.NaN;
+            result.impulseDuration = Double.NaN;
+            result.shortImpulseAbsoluteAmplitude = Double.NaN;
+        }
+        return result;
+    }
+
     @Override
     public String toString() {
         return "local maximum info"
@@ -115,6 +170,22 @@ public class AudioLocalMaximumApertureInfo implements Cloneable {
         int averagedImpulseSampleIndex,
         int aperture,
         int wideAperture)
+    {
+        analyseSample(a, averagedSampleIndex, averagedImpulseSampleIndex, aperture, wideAperture, true, true);
+    }
+
+    // checkLocalMaximum = false means that the caller has already checked, that the sample is a local maximum
+    // in the aperture (for example, by LocalMaximumDetector);
+    // checkTypicalSignal = false means that the comparison with typical signal will be performed later
+    // (see copyFinalResult)
+    void analyseSample(
+        AudioAnalyser a,
+        int averagedSampleIndex,
+        int averagedImpulseSampleIndex,
+        int aperture,
+        int wideAperture,
+        boolean checkLocalMaximum,
+        boolean checkTypicalSignal)
     {
         if (averagedSampleIndex < 0 || averagedSampleIndex >= a.averagedCount) {
             throw new IndexOutOfBoundsException("averagedSampleIndex=" + averagedSampleIndex);
@@ -138,14 +209,14 @@ public class AudioLocalMaximumApertureInfo implements Cloneable {
             // not enough data for stable results
             return;
         }
-        final double currentAmplitudeSquare = a.averagedSquare[averagedSampleIndex];
+        final double currentAmplitudeSquare = a.averagedSquareAt(averagedSampleIndex);
         this.maxAveragedAbsoluteAmplitude = Math.sqrt(currentAmplitudeSquare);
         if (this.maxAveragedAbsoluteAmplitude < a.getGlobalAmplitudeOfLoudSound()) {
             return;
         }
-        for (int k = 1; k < apertureHalf; k++) {
-            if (a.averagedSquare[averagedSampleIndex - k] >= currentAmplitudeSquare
-                || a.averagedSquare[averagedSampleIndex + k] > currentAmplitudeSquare)
+        for (int k = 1; checkLocalMaximum && k < apertureHalf; k++) {
+            if (a.averagedSquareAt(averagedSampleIndex - k) >= currentAmplitudeSquare
+                || a.averagedSquareAt(averagedSampleIndex + k) > currentAmplitudeSquare)
             {
                 // - in other words, in an improbable case of several equal values we choose
                 // the left sample as a local maximum, but other values are not considered as a maximum
@@ -156,9 +227,12 @@ public class AudioLocalMaximumApertureInfo implements Cloneable {
         final int shiftToSamples = a.getAveragingApertureLength() / 2;
         this.localMaximumSampleIndex = averagedSampleIndex + shiftToSamples;
         this.localMaximumSampleTimeStamp = a.sampleTimeStamp(localMaximumSampleIndex);
+        this.absoluteSampleIndex = a.streamPosition() + localMaximumSampleIndex;
         final int wideApertureHalf = wideAperture / 2;
         this.wideApertureHalfDuration = a.getSingleSampleDuration() * wideApertureHalf;
-        if (a.typicalAveragedSignal() * a.getMinRatioOfGoodMaximumAndTypicalSignal() > maxAveragedAbsoluteAmplitude) {
+        if (checkTypicalSignal
+            && a.typicalAveragedSignal() * a.getMinRatioOfGoodMaximumAndTypicalSignal() > maxAveragedAbsoluteAmplitude)
+        {
             this.tooLowRatioToTypicalSignal = true;
             return;
         }
@@ -201,15 +275,23 @@ public class AudioLocalMaximumApertureInfo implements Cloneable {
         final double ratio = a.getRatioOfImpulseAndSilence();
         double silenceSquare = currentAmplitudeSquare / (ratio * ratio);
         int maxImpulseDuration = (int) (a.getMaxImpulseDuration() / a.getSingleSampleDuration());
+        // left and right: nearest indexes with silence, but not further than maxImpulseDuration
+        // (or the array bounds -1 and averagedImpulseCount)
         int left = nearestImpulse;
-        while (left >= 0 && nearestImpulse - left < maxImpulseDuration
-            && a.averagedImpulseSquare[left] >= silenceSquare) {
-            left--;
+        final int leftLimit = Math.max(nearestImpulse - maxImpulseDuration, -1);
+        if (leftLimit < nearestImpulse) {
+            left = a.averagedImpulseLastLess(leftLimit + 1, nearestImpulse + 1, silenceSquare);
+            if (left == -1) {
+                left = leftLimit;
+            }
         }
         int right = nearestImpulse;
-        while (right < a.averagedImpulseCount && right - nearestImpulse < maxImpulseDuration
-            && a.averagedImpulseSquare[right] >= silenceSquare) {
-            right++;
+        final int rightLimit = Math.min(nearestImpulse + maxImpulseDuration, a.averagedImpulseCount);
+        if (rightLimit > nearestImpulse) {
+            right = a.averagedImpulseFirstLess(nearestImpulse, rightLimit, silenceSquare);
+            if (right == -1) {
+                right = rightLimit;
+            }
         }
         impulseDuration = (right - left) * a.getSingleSampleDuration();
         if (right - left >= maxImpulseDuration) {
@@ -220,21 +302,11 @@ public class AudioLocalMaximumApertureInfo implements Cloneable {
         this.shortImpulseLeft = left + shiftToSamples;
         this.shortImpulseRight = right + shiftToSamples;
         this.shortImpulseAbsoluteAmplitude = Math.sqrt(silenceSquare);
-        this.tooShortSilenceBeforeImpulse = false;
-        this.tooShortSilenceAfterImpulse = false;
         int minSilenceDuration = (int) (a.getMinSilenceNearImpulseDuration() / a.getSingleSampleDuration());
-        for (int k = left, kMin = Math.max(0, left - minSilenceDuration); k >= kMin; k--) {
-            if (a.averagedImpulseSquare[k] > silenceSquare) {
-                tooShortSilenceBeforeImpulse = true;
-                break;
-            }
-        }
-        for (int k = right, kMax = Math.min(a.averagedImpulseCount - 1, right + minSilenceDuration); k <= kMax; k++) {
-            if (a.averagedImpulseSquare[k] > silenceSquare) {
-                tooShortSilenceAfterImpulse = true;
-                break;
-            }
-        }
+        this.tooShortSilenceBeforeImpulse = a.averagedImpulseFirstGreater(
+            Math.max(0, left - minSilenceDuration), left + 1, silenceSquare) != -1;
+        this.tooShortSilenceAfterImpulse = a.averagedImpulseFirstGreater(
+            right, Math.min(a.averagedImpulseCount, right + minSilenceDuration + 1), silenceSquare) != -1;
         return !tooShortSilenceBeforeImpulse && !tooShortSilenceAfterImpulse;
     }
 
@@ -243,17 +315,65 @@ public class AudioLocalMaximumApertureInfo implements Cloneable {
         // Impulse is averaged by smaller aperture, so, its peak can be little left or right from the local
         // maximum in averaged graph (averaged by usual aperture). But the distance should not be greater
         // than the averaging aperture.
-        for (int k = 0; k < searchWindowHalf; k++) {
-            final int left = averagedImpulseSampleIndex - k;
-            if (left >= 0 && a.averagedImpulseSquare[left] >= amplitudeSquare) {
-                return left;
-            }
-            final int right = averagedImpulseSampleIndex + k;
-            if (right < a.averagedImpulseCount && a.averagedImpulseSquare[right] >= amplitudeSquare) {
-                return right;
-            }
+        if (searchWindowHalf <= 0) {
+            return -1;
+        }
+        final int left = a.averagedImpulseLastNotLess(
+            Math.max(averagedImpulseSampleIndex - searchWindowHalf + 1, 0),
+            Math.min(averagedImpulseSampleIndex + 1, a.averagedImpulseCount),
+            amplitudeSquare);
+        final int right = a.averagedImpulseFirstNotLess(
+            Math.max(averagedImpulseSampleIndex, 0),
+            Math.min(averagedImpulseSampleIndex + searchWindowHalf, a.averagedImpulseCount),
+            amplitudeSquare);
+        if (left == -1 || right == -1) {
+            return left == -1 ? right : left;
+        }
+        return averagedImpulseSampleIndex - left <= right - averagedImpulseSampleIndex ? left : right;
+        // - at equal distances, the left index is preferred
+    }
+
+    // Stores in this object the result, found by the decimated analyser of AudioAnalyser a (see
+    // AudioAnalyser.setDecimation), with sample indexes and time stamps converted to source samples:
+    // decimated sample j (a block of decimation source samples) corresponds to the middle of the block.
+    // Returns this object.
+    AudioLocalMaximumApertureInfo copyDecimatedResult(
+        AudioAnalyser a,
+        AudioLocalMaximumApertureInfo decimatedResult,
+        int decimation)
+    {
+        copyFrom(decimatedResult);
+        final int blockMiddle = decimation / 2;
+        this.localMaximumSampleIndex = decimatedResult.localMaximumSampleIndex * decimation + blockMiddle;
+        this.localMaximumSampleTimeStamp = a.sampleTimeStamp(localMaximumSampleIndex);
+        this.absoluteSampleIndex = a.streamPosition() + localMaximumSampleIndex;
+        if (shortImpulse) {
+            this.shortImpulseLeft = decimatedResult.shortImpulseLeft * decimation + blockMiddle;
+            this.shortImpulseRight = decimatedResult.shortImpulseRight * decimation + blockMiddle;
         }
-        return -1;
+        return this;
+    }
+
+    private void copyFrom(AudioLocalMaximumApertureInfo other) {
+        localMaximum = other.localMaximum;
+        goodLocalMaximum = other.goodLocalMaximum;
+        tooLowRatioToTypicalSignal = other.tooLowRatioToTypicalSignal;
+        tooLowRatioToLowSignal = other.tooLowRatioToLowSignal;
+        cannotFindShortImpulse = other.cannotFindShortImpulse;
+        shortImpulse = other.shortImpulse;
+        tooShortSilenceBeforeImpulse = other.tooShortSilenceBeforeImpulse;
+        tooShortSilenceAfterImpulse = other.tooShortSilenceAfterImpulse;
+        localMaximumSampleIndex = other.localMaximumSampleIndex;
+        localMaximumSampleTimeStamp = other.localMaximumSampleTimeStamp;
+        absoluteSampleIndex = other.absoluteSampleIndex;
+        maxAveragedAbsoluteAmplitude = other.maxAveragedAbsoluteAmplitude;
+        minAveragedAbsoluteAmplitude = other.minAveragedAbsoluteAmplitude;
+        lowPercentileAveragedAbsoluteAmplitude = other.lowPercentileAveragedAbsoluteAmplitude;
+        shortImpulseLeft = other.shortImpulseLeft;
+        shortImpulseRight = other.shortImpulseRight;
+        shortImpulseAbsoluteAmplitude = other.shortImpulseAbsoluteAmplitude;
+        wideApertureHalfDuration = other.wideApertureHalfDuration;
+        impulseDuration = other.impulseDuration;
     }
 
     private void reset() {
@@ -265,6 +385,7 @@ public class AudioLocalMaximumApertureInfo implements Cloneable {
         shortImpulse = false;
         tooShortSilenceBeforeImpulse = tooShortSilenceAfterImpulse = false;
         localMaximumSampleIndex = -1;
+        absoluteSampleIndex = -1;
         minAveragedAbsoluteAmplitude = Double.NaN;
         lowPercentileAveragedAbsoluteAmplitude = Double.NaN;
         localMaximumSampleTimeStamp = Double.NaN;
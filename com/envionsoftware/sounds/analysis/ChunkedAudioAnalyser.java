@@ -0,0 +1,254 @@
+package com.envionsoftware.sounds.analysis;
+
+/**
+ * Analyses recordings of any length (for example, 24-hour files) in bounded memory: samples are read
+ * by chunks and analysed by {@link AudioAnalyser} in streaming mode, which keeps only the current chunk
+ * and the samples of previous chunks, necessary for final results of the chunk (see
+ * {@link AudioAnalyser#setReusingFinalResults(boolean)}). Local maximums are passed to the detection listener
+ * in increasing order of time, every maximum once, with the same results as analysis of the whole recording
+ * by setSamples(), excepting the typical signal.
+ * <p>
+ * The typical signal of the whole recording is estimated by an additional pass: averaged squares of all
+ * samples are added to a histogram with logarithmic bars (relative error less than 0.4% for amplitudes),
+ * so percentileAlgorithm parameter is ignored. It can also be specified by
+ * {@link #setTypicalAveragedSignal(double)}; then the recording is read only once.
+ */
+public class ChunkedAudioAnalyser {
+    // Provides samples of the recording by any ranges (for example, decodes them from a mapped file)
+    public interface SampleReader {
+        // Stores samples position..position+count-1 into result[offset..offset+count-1]
+        void readSamples(long position, double[] result, int offset, int count);
+    }
+
+    private static final double DEFAULT_CHUNK_DURATION = 5.0;
+    // - seconds
+    private static final int MAX_DEFAULT_CHUNK_LENGTH = 1 << 24;
+
+    private final AudioAnalyser analyser;
+    private int chunkLength;
+    private double fixedTypicalAveragedSignal = Double.NaN;
+    // - NaN means estimation by the additional pass
+    private DetectionListener detectionListener = null;
+
+    private final LogarithmicHistogram histogram = new LogarithmicHistogram();
+    private final SequentialGoodMaximumsTracker sequentialGoodMaximumsTracker = new SequentialGoodMaximumsTracker();
+    private final AudioLocalMaximumApertureInfo emittedInfo = new AudioLocalMaximumApertureInfo();
+    private double[] chunk = new double[0];
+    private double[] squares = new double[0];
+    // - work memory for estimation of the typical signal
+    private long emittedTo = 0;
+    // - absolute averaged index: local maximums before it are already passed to the listener
+
+    // Analysis results:
+    private double maxAbsoluteSignal = Double.NaN;
+    private double typicalAveragedSignal = Double.NaN;
+    private long numberOfLocalMaximums = 0;
+    private long numberOfGoodLocalMaximums = 0;
+
+    public ChunkedAudioAnalyser(double singleSampleDurationInSeconds) {
+        this.analyser = new AudioAnalyser(singleSampleDurationInSeconds);
+        this.chunkLength = (int) Math.max(1, Math.min(
+            Math.round(DEFAULT_CHUNK_DURATION / singleSampleDurationInSeconds), MAX_DEFAULT_CHUNK_LENGTH));
+    }
+
+    // Copies all customizable parameters of the given analyser (reusingFinalResults is always true,
+    // decimation is ignored, as in streaming mode)
+    public void setParameters(AudioAnalyser parameters) {
+        analyser.copyParameters(parameters);
+    }
+
+    public int getParallelism() {
+        return analyser.getParallelism();
+    }
+
+    // Parallelism of analysis of every chunk (see AudioAnalyser.setParallelism)
+    public void setParallelism(int parallelism) {
+        analyser.setParallelism(parallelism);
+    }
+
+    public int getChunkLength() {
+        return chunkLength;
+    }
+
+    // Number of new samples, analysed by every analyze() call of the streaming analyser; its capacity
+    // is chunkLength + the margin, necessary for final results (several seconds for default parameters)
+    public void setChunkLength(int chunkLength) {
+        if (chunkLength <= 0) {
+            throw new IllegalArgumentException("Zero or negative chunk length");
+        }
+        this.chunkLength = chunkLength;
+    }
+
+    public double getTypicalAveragedSignal() {
+        return fixedTypicalAveragedSignal;
+    }
+
+    // Typical signal for comparison with local maximums; NaN (default) means estimation by an additional pass
+    public void setTypicalAveragedSignal(double typicalAveragedSignal) {
+        if (typicalAveragedSignal < 0.0) {
+            throw new IllegalArgumentException("Negative typical signal");
+        }
+        this.fixedTypicalAveragedSignal = typicalAveragedSignal;
+    }
+
+    public DetectionListener getDetectionListener() {
+        return detectionListener;
+    }
+
+    // Receives all local maximums in increasing order of time. The passed object is reused; its sample indexes
+    // and time stamps are relative to the current interval of the streaming analyser: use getAbsoluteSampleIndex()
+    public void setDetectionListener(DetectionListener detectionListener) {
+        this.detectionListener = detectionListener;
+    }
+
+    // Number of samples in memory of the streaming analyser for the current parameters
+    public int streamingCapacity() {
+        return (int) Math.min((long) chunkLength + analyser.finalResultsMargin(), Integer.MAX_VALUE);
+    }
+
+    // Analyses numberOfSamples samples, provided by the reader; the listener receives all local maximums.
+    // The reader is called twice for every sample if the typical signal is not specified, else once.
+    public void analyze(long numberOfSamples, SampleReader reader) {
+        if (numberOfSamples <= 0) {
+            throw new IllegalArgumentException("Zero or negative number of samples");
+        }
+        if (reader == null) {
+            throw new NullPointerException("Null sample reader");
+        }
+        if (chunk.length < chunkLength) {
+            chunk = new double[chunkLength];
+        }
+        numberOfLocalMaximums = 0;
+        numberOfGoodLocalMaximums = 0;
+        sequentialGoodMaximumsTracker.reset();
+        emittedTo = 0;
+        if (Double.isNaN(fixedTypicalAveragedSignal)) {
+            estimateTypicalSignal(numberOfSamples, reader);
+        } else {
+            maxAbsoluteSignal = Double.NaN;
+            // - found while analysis
+            typicalAveragedSignal = fixedTypicalAveragedSignal;
+        }
+        analyser.setReusingFinalResults(true);
+        analyser.setCollectingLocalMaximums(true);
+        analyser.startStreaming(streamingCapacity());
+        double maxAbs = 0.0;
+        for (long position = 0; position < numberOfSamples; ) {
+            final int n = (int) Math.min(chunkLength, numberOfSamples - position);
+            reader.readSamples(position, chunk, 0, n);
+            for (int k = 0; k < n; k++) {
+                maxAbs = Math.max(maxAbs, Math.abs(chunk[k]));
+            }
+            analyser.appendSamples(chunk, 0, n);
+            position += n;
+            analyser.setPreprocessingResults(
+                Double.isNaN(maxAbsoluteSignal) ? maxAbs : maxAbsoluteSignal, typicalAveragedSignal);
+            analyser.analyze();
+            emitNewLocalMaximums(position == numberOfSamples);
+        }
+        maxAbsoluteSignal = maxAbs;
+    }
+
+    public double maxAbsoluteSignal() {
+        return maxAbsoluteSignal;
+    }
+
+    // Estimated (or specified) typical signal, used by the last analyze() call
+    public double typicalAveragedSignal() {
+        return typicalAveragedSignal;
+    }
+
+    public long numberOfLocalMaximums() {
+        return numberOfLocalMaximums;
+    }
+
+    public long numberOfGoodLocalMaximums() {
+        return numberOfGoodLocalMaximums;
+    }
+
+    public int maxNumberOfSequentialGoodMaximums() {
+        return sequentialGoodMaximumsTracker.maxNumberOfSequentialGoodMaximums();
+    }
+
+    public int totalNumberOfSequentialGoodMaximums() {
+        return sequentialGoodMaximumsTracker.totalNumberOfSequentialGoodMaximums();
+    }
+
+    // The pass, finding maxAbsoluteSignal and the percentile of averaged squares by the histogram.
+    // Averaged squares are calculated by sliding sums inside every chunk with aperture-1 squares of the previous
+    // chunk, so rounding errors are not accumulated.
+    private void estimateTypicalSignal(long numberOfSamples, SampleReader reader) {
+        final int aperture = (int) Math.min(analyser.rawAveragingApertureLength(), numberOfSamples);
+        final int carry = aperture - 1;
+        if (squares.length < carry + chunkLength) {
+            squares = new double[carry + chunkLength];
+        }
+        histogram.clear();
+        double maxSquare = 0.0;
+        int available = 0;
+        // - number of actual elements in squares
+        for (long position = 0; position < numberOfSamples; ) {
+            final int n = (int) Math.min(chunkLength, numberOfSamples - position);
+            reader.readSamples(position, chunk, 0, n);
+            position += n;
+            final int keep = Math.min(available, carry);
+            System.arraycopy(squares, available - keep, squares, 0, keep);
+            for (int k = 0; k < n; k++) {
+                final double square = chunk[k] * chunk[k];
+                squares[keep + k] = square;
+                maxSquare = Math.max(maxSquare, square);
+            }
+            available = keep + n;
+            if (available < aperture) {
+                continue;
+            }
+            double sum = 0.0;
+            for (int k = 0; k < aperture; k++) {
+                sum += squares[k];
+            }
+            final double apertureInv = 1.0 / aperture;
+            histogram.add(sum * apertureInv);
+            for (int k = aperture; k < available; k++) {
+                sum += squares[k] - squares[k - aperture];
+                histogram.add(sum * apertureInv);
+            }
+        }
+        maxAbsoluteSignal = Math.sqrt(maxSquare);
+        typicalAveragedSignal = Math.sqrt(histogram.percentile(analyser.getTypicalSignalPercentile()));
+    }
+
+    // Passes to the listener local maximums, which have final results and were not passed yet
+    private void emitNewLocalMaximums(boolean endOfStream) {
+        final LocalMaximumTable table = analyser.localMaximumTable();
+        final int shiftToSamples = analyser.getAveragingApertureLength() / 2;
+        final long finalTo = endOfStream ? Long.MAX_VALUE : analyser.finalResultsTo();
+        for (int row = 0, n = table.size(); row < n; row++) {
+            final long index = table.absoluteSampleIndex(row) - shiftToSamples;
+            // - absolute averaged index
+            if (index < emittedTo) {
+                continue;
+            }
+            if (index >= finalTo) {
+                break;
+            }
+            numberOfLocalMaximums++;
+            if (table.isGoodLocalMaximum(row)) {
+                numberOfGoodLocalMaximums++;
+                final long absoluteSampleIndex = table.absoluteSampleIndex(row);
+                sequentialGoodMaximumsTracker.addGoodMaximum(
+                    absoluteSampleIndex,
+                    absoluteSampleIndex * analyser.getSingleSampleDuration(),
+                    analyser.getMaxDurationBetweenSequentialGoodMaximums());
+            }
+            if (detectionListener != null) {
+                table.readRow(row, emittedInfo);
+                if (emittedInfo.isGoodLocalMaximum()) {
+                    detectionListener.goodLocalMaximumFound(emittedInfo);
+                } else {
+                    detectionListener.localMaximumRejected(emittedInfo);
+                }
+            }
+        }
+        emittedTo = Math.max(emittedTo, finalTo);
+    }
+}
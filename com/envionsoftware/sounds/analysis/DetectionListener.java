@@ -0,0 +1,13 @@
+package com.envionsoftware.sounds.analysis;
+
+// Receives local maximums, found by AudioAnalyser.analyze() (see AudioAnalyser.setDetectionListener).
+// The passed object is reused by the analyser: it is valid only while the call;
+// use info.clone() if it is necessary to store it.
+public interface DetectionListener {
+    void goodLocalMaximumFound(AudioLocalMaximumApertureInfo info);
+
+    // Called for local maximums, which are not good; the reason can be checked by isTooLowRatioToTypicalSignal()
+    // and other methods of info
+    default void localMaximumRejected(AudioLocalMaximumApertureInfo info) {
+    }
+}
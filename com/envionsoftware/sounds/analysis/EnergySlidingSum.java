@@ -0,0 +1,97 @@
+package com.envionsoftware.sounds.analysis;
+
+// Sliding sums of non-negative values (like amplitudeSquare) in long fixed-point format: every value
+// is multiplied by 2^shift and rounded to long, where shift is chosen so that the total sum is less than 2^61.
+// Then the sum of any range values[from..to-1] is calculated with an absolute error not greater than
+// (to - from) * 2^(-shift-1), which does not depend on the position of the range and on the history of
+// the sliding sum (unlike double running sums, which accumulate rounding errors).
+// Sums are exact only if all values are integers and shift >= 0, i.e. the total is less than 2^61
+// (always true for squares of 16-bit samples); then averages are identical to AnalysingTools.average.
+// For non-integer values or a larger total, the error bound above is all that is guaranteed.
+// Sums are not stored: every average() call runs its own sliding sum over the values. Every value is rounded
+// once: rounded values in the current aperture are kept in a ring buffer, so an instance must not be used
+// by several threads at the same time (analysers, sharing samples, have their own instances, see copyScale).
+final class EnergySlidingSum {
+    private static final int SCALED_TOTAL_EXPONENT = 61;
+    // - scaled total sum < 2^61: sums and their differences cannot overflow
+
+    private double[] values = null;
+    private int count = 0;
+    private double scale = 1.0;
+    private double scaleInv = 1.0;
+    private long[] window = new long[0];
+    // - ring buffer of scaled rounded values in the current aperture
+
+    // Chooses the scale for values[0..count-1]: O(count) operations; the array must not be changed
+    // while this object is used
+    void build(double[] values, int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Negative count");
+        }
+        double total = 0.0;
+        for (int k = 0; k < count; k++) {
+            total += Math.abs(values[k]);
+        }
+        final int shift = total == 0.0 ? 0 :
+            Math.min(SCALED_TOTAL_EXPONENT - 1 - Math.getExponent(total), Double.MAX_EXPONENT - 1);
+        // - 2^e <= total < 2^(e+1) for e = getExponent(total)
+        this.scale = Math.scalb(1.0, shift);
+        this.scaleInv = Math.scalb(1.0, -shift);
+        this.values = values;
+        this.count = count;
+    }
+
+    // The same as build() for the same values as in other object, without O(count) operations
+    void copyScale(EnergySlidingSum other) {
+        this.scale = other.scale;
+        this.scaleInv = other.scaleInv;
+        this.values = other.values;
+        this.count = other.count;
+    }
+
+    int count() {
+        return count;
+    }
+
+    // Fills result[0..AnalysingTools.averageCount(count, aperture)-1] by means in the sliding aperture,
+    // like AnalysingTools.average(result, values, count, aperture)
+    void average(double[] result, int aperture) {
+        aperture = Math.max(aperture, 1);
+        average(result, 0, AnalysingTools.averageCount(count, aperture), aperture);
+    }
+
+    // The same, but fills only result[fromIndex..toIndex-1]: O(toIndex - fromIndex + aperture) operations
+    void average(double[] result, int fromIndex, int toIndex, int aperture) {
+        aperture = Math.max(aperture, 1);
+        if (fromIndex < 0 || toIndex + aperture - 1 > count) {
+            throw new IndexOutOfBoundsException("Invalid range " + fromIndex + ".." + toIndex
+                + " for averaging " + count + " values by aperture " + aperture);
+        }
+        if (fromIndex >= toIndex) {
+            return;
+        }
+        if (window.length < aperture) {
+            window = new long[aperture];
+        }
+        final double[] values = this.values;
+        final long[] window = this.window;
+        final double scale = this.scale;
+        final double scaleInv = this.scaleInv;
+        final double apertureInv = 1.0 / aperture;
+        long sum = 0;
+        for (int k = 0; k < aperture; k++) {
+            sum += window[k] = Math.round(values[fromIndex + k] * scale);
+        }
+        result[fromIndex] = sum * scaleInv * apertureInv;
+        for (int k = fromIndex + 1, i = fromIndex + aperture, p = 0; k < toIndex; k++, i++) {
+            final long v = Math.round(values[i] * scale);
+            sum += v - window[p];
+            // - integer arithmetic: the same sum as if it was calculated from the beginning
+            window[p] = v;
+            if (++p == aperture) {
+                p = 0;
+            }
+            result[k] = sum * scaleInv * apertureInv;
+        }
+    }
+}
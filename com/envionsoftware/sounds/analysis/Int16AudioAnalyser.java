@@ -0,0 +1,503 @@
+package com.envionsoftware.sounds.analysis;
+
+import java.util.Arrays;
+import java.util.List;
+
+// Analyser for 16-bit PCM samples with compact storage: short[] samples and float[] sums of squares
+// in averaging apertures instead of 4-5 double[] arrays (10 bytes per sample instead of 40 and more).
+// Sums are calculated exactly in long and rounded to float (sums less than 2^24 are stored exactly).
+// Local maximums and their averaged amplitudes are the same as in AudioAnalyser with the same samples
+// and parameters, and so are good maximums: where float rounding could change a comparison (equal float sums,
+// a minimum or a percentile among float sums, which are not exact, an averaged value near a threshold),
+// the exact values are recalculated from the samples (see Engine.compareAveraged and Engine.exactPercentile).
+// Only usual (non-streaming) analysis is supported and percentiles are always found by selection;
+// parameters of detection are copied from a configured AudioAnalyser (see setParameters).
+public final class Int16AudioAnalyser {
+    private final Engine engine;
+    // - AudioAnalyser, whose access to samples and averaged arrays is replaced by the compact storage;
+    // it is not accessible outside, so its methods, which require double[] samples, cannot be called
+
+    public Int16AudioAnalyser(double singleSampleDurationInSeconds) {
+        this.engine = new Engine(singleSampleDurationInSeconds);
+    }
+
+    public double getSingleSampleDuration() {
+        return engine.getSingleSampleDuration();
+    }
+
+    // Parameters of detection are specified by a usual AudioAnalyser with the same sample duration, configured
+    // by its setters (like MultiChannelAudioAnalyser.setParameters); its tuning parameters (percentile algorithm,
+    // parallelism, decimation etc.) are not used. Without this call, default parameters of AudioAnalyser are used.
+    public void setParameters(AudioAnalyser parameters) {
+        engine.copyParameters(parameters);
+    }
+
+    public void setSamples(short[] samples) {
+        engine.setSamples(samples);
+    }
+
+    public void setSamples(short[] samples, int offset, int count) {
+        engine.setSamples(samples, offset, count);
+    }
+
+    public boolean isCollectingLocalMaximums() {
+        return engine.isCollectingLocalMaximums();
+    }
+
+    public void setCollectingLocalMaximums(boolean collectingLocalMaximums) {
+        engine.setCollectingLocalMaximums(collectingLocalMaximums);
+    }
+
+    public DetectionListener getDetectionListener() {
+        return engine.getDetectionListener();
+    }
+
+    public void setDetectionListener(DetectionListener detectionListener) {
+        engine.setDetectionListener(detectionListener);
+    }
+
+    public double singleSampleDuration() {
+        return engine.singleSampleDuration();
+    }
+
+    public int count() {
+        return engine.count();
+    }
+
+    public double[] amplitudeSamples() {
+        return engine.amplitudeSamples();
+    }
+
+    public double[] amplitudeSquare() {
+        return engine.amplitudeSquare();
+    }
+
+    public double maxAbsoluteSignal() {
+        return engine.maxAbsoluteSignal();
+    }
+
+    public double typicalAveragedSignal() {
+        return engine.typicalAveragedSignal();
+    }
+
+    public int averagedCount() {
+        return engine.averagedCount();
+    }
+
+    public double[] averagedSquare() {
+        return engine.averagedSquare();
+    }
+
+    public int averagedImpulseCount() {
+        return engine.averagedImpulseCount();
+    }
+
+    public double[] averagedImpulseSquare() {
+        return engine.averagedImpulseSquare();
+    }
+
+    public LocalMaximumTable localMaximumTable() {
+        return engine.localMaximumTable();
+    }
+
+    public List<AudioLocalMaximumApertureInfo> allLocalMaximums() {
+        return engine.allLocalMaximums();
+    }
+
+    public List<AudioLocalMaximumApertureInfo> goodLocalMaximums() {
+        return engine.goodLocalMaximums();
+    }
+
+    public int maxNumberOfSequentialGoodMaximums() {
+        return engine.maxNumberOfSequentialGoodMaximums();
+    }
+
+    public int totalNumberOfSequentialGoodMaximums() {
+        return engine.totalNumberOfSequentialGoodMaximums();
+    }
+
+    public double sampleTimeStamp(int sampleIndex) {
+        return engine.sampleTimeStamp(sampleIndex);
+    }
+
+    public void preprocess() {
+        engine.preprocess();
+    }
+
+    public void analyze() {
+        engine.analyze();
+    }
+
+    public void postprocessFoundMaximums() {
+        engine.postprocessFoundMaximums();
+    }
+
+    private static final class Engine extends AudioAnalyser {
+        private static final int BLOCK_LENGTH = 64;
+        // - for block minimums, used by averagedMin
+        private static final float EXACT_FLOAT_LIMIT = 1 << 24;
+        // - all integer sums less than this limit are stored in float exactly
+        private static final int HISTOGRAM_LENGTH = 65536;
+
+        // Note: only elements 0..count-1 (0..averagedCount-1 etc.) of all arrays are actual.
+        private short[] samples = new short[0];
+        private float[] averagedSums = new float[0];
+        // - averagedSquare multiplied by averagingLength
+        private float[] averagedImpulseSums = new float[0];
+        // - averagedImpulseSquare multiplied by averagingImpulseLength
+        private float[] blockMinimums = new float[0];
+        private float[] floatWorkMemory = new float[0];
+        private int averagingLength = 1;
+        private int averagingImpulseLength = 1;
+        private final LocalMaximumDetector localMaximumDetector = new LocalMaximumDetector();
+        private final AudioLocalMaximumApertureInfo analysedInfo = new AudioLocalMaximumApertureInfo();
+
+        Engine(double singleSampleDurationInSeconds) {
+            super(singleSampleDurationInSeconds);
+        }
+
+        void setSamples(short[] samples) {
+            setSamples(samples, 0, samples.length);
+        }
+
+        void setSamples(short[] samples, int offset, int count) {
+            if (samples == null) {
+                throw new NullPointerException("Null amplitude samples");
+            }
+            if (count <= 0) {
+                throw new IllegalArgumentException("Zero or negative number of amplitude samples");
+            }
+            if (offset < 0 || offset + count > samples.length) {
+                throw new IndexOutOfBoundsException("Invalid offset=" + offset + " or count=" + count +
+                    " for array short[" + samples.length + "]");
+            }
+            this.count = count;
+            if (this.samples.length < count) {
+                this.samples = new short[count];
+            }
+            System.arraycopy(samples, offset, this.samples, 0, count);
+        }
+
+        @Override
+        public double[] amplitudeSamples() {
+            final double[] result = new double[count];
+            for (int k = 0; k < count; k++) {
+                result[k] = samples[k];
+            }
+            return result;
+        }
+
+        @Override
+        public double[] amplitudeSquare() {
+            final double[] result = new double[count];
+            for (int k = 0; k < count; k++) {
+                result[k] = samples[k] * samples[k];
+            }
+            return result;
+        }
+
+        @Override
+        public double[] averagedSquare() {
+            return scale(averagedSums, averagedCount, 1.0 / averagingLength);
+        }
+
+        @Override
+        public double[] averagedImpulseSquare() {
+            return scale(averagedImpulseSums, averagedImpulseCount, 1.0 / averagingImpulseLength);
+        }
+
+        @Override
+        public void preprocess() {
+            average();
+            int maxAbs = 0;
+            for (int k = 0; k < count; k++) {
+                maxAbs = Math.max(maxAbs, Math.abs(samples[k]));
+            }
+            this.maxAbsoluteSignal = maxAbs;
+            if (histogramWorkMemory.length < HISTOGRAM_LENGTH) {
+                histogramWorkMemory = new int[HISTOGRAM_LENGTH];
+            }
+            final int rank = AnalysingTools.percentileIndex(averagedCount, getTypicalSignalPercentile());
+            final float sum = AnalysingTools.percentileOfNonNegative(
+                averagedSums, 0, averagedCount, histogramWorkMemory, getTypicalSignalPercentile());
+            this.typicalAveragedSignal = Math.sqrt(exactPercentile(0, averagedCount, rank, sum));
+        }
+
+        @Override
+        public void analyze() {
+            average();
+            averageImpulse();
+            final int aperture = getLocalMaxApertureLength();
+            final int wideAperture = getLocalMaxWideApertureLength();
+            clearLocalMaximums();
+            final int workMemoryLength = Math.min(wideAperture / 2 + 1, averagedCount);
+            if (floatWorkMemory.length < workMemoryLength) {
+                floatWorkMemory = new float[workMemoryLength];
+            }
+            final int apertureHalf = aperture / 2;
+            final int fromIndex = apertureHalf;
+            final int toIndex = averagedCount - apertureHalf;
+            if (fromIndex >= toIndex) {
+                return;
+            }
+            localMaximumDetector.findLocalMaximums(averagedSums, fromIndex, toIndex, apertureHalf, this::compareAveraged);
+            final AudioLocalMaximumApertureInfo info = analysedInfo;
+            for (int k = 0, n = localMaximumDetector.numberOfLocalMaximums(); k < n; k++) {
+                final int index = localMaximumDetector.localMaximum(k);
+                final int impulseIndex = index + (averagedImpulseCount - averagedCount) / 2;
+                info.analyseSample(this, index, impulseIndex, aperture, wideAperture, false, true);
+                if (info.isLocalMaximum()) {
+                    addLocalMaximum(info);
+                }
+            }
+        }
+
+        // Exact value (the same as in AudioAnalyser), O(averaging aperture) operations if the float sum is not exact
+        @Override
+        double averagedSquareAt(int averagedIndex) {
+            final float sum = averagedSums[averagedIndex];
+            if (sum < EXACT_FLOAT_LIMIT) {
+                return sum * (1.0 / averagingLength);
+            }
+            return exactSum(averagedIndex, averagingLength) * (1.0 / averagingLength);
+        }
+
+        // The same for the impulse aperture
+        @Override
+        double averagedImpulseSquareAt(int averagedImpulseIndex) {
+            final float sum = averagedImpulseSums[averagedImpulseIndex];
+            if (sum < EXACT_FLOAT_LIMIT) {
+                return sum * (1.0 / averagingImpulseLength);
+            }
+            return exactSum(averagedImpulseIndex, averagingImpulseLength) * (1.0 / averagingImpulseLength);
+        }
+
+        @Override
+        int averagedImpulseFirstGreater(int fromIndex, int toIndex, double threshold) {
+            for (int k = fromIndex; k < toIndex; k++) {
+                if (compareImpulse(k, threshold) > 0) {
+                    return k;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        int averagedImpulseFirstLess(int fromIndex, int toIndex, double threshold) {
+            for (int k = fromIndex; k < toIndex; k++) {
+                if (compareImpulse(k, threshold) < 0) {
+                    return k;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        int averagedImpulseLastLess(int fromIndex, int toIndex, double threshold) {
+            for (int k = toIndex - 1; k >= fromIndex; k--) {
+                if (compareImpulse(k, threshold) < 0) {
+                    return k;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        int averagedImpulseFirstNotLess(int fromIndex, int toIndex, double threshold) {
+            for (int k = fromIndex; k < toIndex; k++) {
+                if (compareImpulse(k, threshold) >= 0) {
+                    return k;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        int averagedImpulseLastNotLess(int fromIndex, int toIndex, double threshold) {
+            for (int k = toIndex - 1; k >= fromIndex; k--) {
+                if (compareImpulse(k, threshold) >= 0) {
+                    return k;
+                }
+            }
+            return -1;
+        }
+
+        // Exact minimum: rounding to float is monotone, so the exact minimum is one of the elements
+        // with the minimal float sum; if it is not exact, they are recalculated from the samples
+        @Override
+        double averagedMin(int minIndexInAveragedSquare, int maxIndexInAveragedSquare) {
+            final int from = Math.max(minIndexInAveragedSquare, 0);
+            final int to = Math.min(maxIndexInAveragedSquare, averagedCount - 1) + 1;
+            if (from >= to) {
+                return Double.POSITIVE_INFINITY;
+            }
+            float result = Float.POSITIVE_INFINITY;
+            int k = from;
+            for (; k < to && k % BLOCK_LENGTH != 0; k++) {
+                result = Math.min(result, averagedSums[k]);
+            }
+            for (; k + BLOCK_LENGTH <= to; k += BLOCK_LENGTH) {
+                result = Math.min(result, blockMinimums[k / BLOCK_LENGTH]);
+            }
+            for (; k < to; k++) {
+                result = Math.min(result, averagedSums[k]);
+            }
+            if (result < EXACT_FLOAT_LIMIT) {
+                return result * (1.0 / averagingLength);
+            }
+            long exactMin = Long.MAX_VALUE;
+            int index = -1;
+            long sum = 0;
+            for (k = from; k < to; k++) {
+                if (k % BLOCK_LENGTH == 0 && k + BLOCK_LENGTH <= to && blockMinimums[k / BLOCK_LENGTH] != result) {
+                    k += BLOCK_LENGTH - 1;
+                } else if (averagedSums[k] == result) {
+                    sum = exactSum(k, index, sum);
+                    index = k;
+                    exactMin = Math.min(exactMin, sum);
+                }
+            }
+            return exactMin * (1.0 / averagingLength);
+        }
+
+        // Exact percentile (the same as AnalysingTools.percentileBySelection in AudioAnalyser)
+        @Override
+        double averagedPercentile(int minIndexInAveragedSquare, int maxIndexInAveragedSquare, double level) {
+            final int from = Math.max(minIndexInAveragedSquare, 0);
+            final int n = Math.min(maxIndexInAveragedSquare, averagedCount - 1) - from + 1;
+            if (n <= 0) {
+                return Double.NaN;
+            }
+            if (floatWorkMemory.length < n) {
+                floatWorkMemory = new float[n];
+            }
+            System.arraycopy(averagedSums, from, floatWorkMemory, 0, n);
+            final int rank = AnalysingTools.percentileIndex(n, level);
+            return exactPercentile(from, n, rank, AnalysingTools.select(floatWorkMemory, 0, n, rank));
+        }
+
+        // Returns the exact averaged square with the given rank among averagedSquare[from..from+n-1],
+        // if the float sum with this rank is known. Rounding to float is monotone, so it is one of the elements
+        // with this float sum: if it is not exact, their exact sums are found in O(n + averaging aperture)
+        // operations (and workMemory of their number), and the result is selected among them.
+        private double exactPercentile(int from, int n, int rank, float sumWithRank) {
+            if (sumWithRank < EXACT_FLOAT_LIMIT) {
+                return sumWithRank * (1.0 / averagingLength);
+            }
+            int numberOfLess = 0;
+            int numberOfEqual = 0;
+            int index = -1;
+            long sum = 0;
+            for (int k = from, to = from + n; k < to; k++) {
+                final float v = averagedSums[k];
+                if (v < sumWithRank) {
+                    numberOfLess++;
+                } else if (v == sumWithRank) {
+                    sum = exactSum(k, index, sum);
+                    index = k;
+                    if (workMemory.length <= numberOfEqual) {
+                        workMemory = Arrays.copyOf(workMemory, Math.max(16, 2 * workMemory.length));
+                    }
+                    workMemory[numberOfEqual++] = sum;
+                    // - exact: sums of less than 2^23 squares of 16-bit samples are less than 2^53
+                }
+            }
+            return AnalysingTools.select(workMemory, 0, numberOfEqual, rank - numberOfLess)
+                * (1.0 / averagingLength);
+        }
+
+        // Returns the sign of (averagedImpulseSquare[k] - threshold), the same as in AudioAnalyser: the float sum
+        // is used, if it is far enough from the threshold (the margin covers float and double rounding)
+        private int compareImpulse(int k, double threshold) {
+            final float sum = averagedImpulseSums[k];
+            double value = sum * (1.0 / averagingImpulseLength);
+            if (sum >= EXACT_FLOAT_LIMIT) {
+                final double bound = threshold * averagingImpulseLength;
+                if (Math.abs(sum - bound) <= Math.ulp(sum) + Math.abs(bound) * 0x1p-48) {
+                    value = exactSum(k, averagingImpulseLength) * (1.0 / averagingImpulseLength);
+                }
+            }
+            return value > threshold ? 1 : value < threshold ? -1 : 0;
+        }
+
+        // Exact sum of squares of samples[index..index+length-1]
+        private long exactSum(int index, int length) {
+            long result = 0;
+            for (int k = index, to = index + length; k < to; k++) {
+                result += samples[k] * samples[k];
+            }
+            return result;
+        }
+
+        // Exact sum of squares in the averaging aperture, starting from index: it is found from the known sum
+        // for previousIndex < index in O(index - previousIndex) operations, if it is faster than summing again
+        // (previousIndex = -1 means that there is no known sum)
+        private long exactSum(int index, int previousIndex, long previousSum) {
+            if (previousIndex < 0 || index - previousIndex > averagingLength) {
+                return exactSum(index, averagingLength);
+            }
+            long result = previousSum;
+            for (int k = previousIndex; k < index; k++) {
+                final int m = k + averagingLength;
+                result += samples[m] * samples[m] - samples[k] * samples[k];
+            }
+            return result;
+        }
+
+        // Returns the sign of (averagedSquare[i] - averagedSquare[j]), calculated exactly;
+        // requires O(|i - j|) operations if the stored float sums are equal, but not exact
+        private int compareAveraged(int i, int j) {
+            final float a = averagedSums[i];
+            final float b = averagedSums[j];
+            if (a != b || a < EXACT_FLOAT_LIMIT) {
+                return Float.compare(a, b);
+            }
+            final int from = Math.min(i, j);
+            final int to = Math.max(i, j);
+            long difference = 0;
+            // - sum for "to" minus sum for "from"
+            for (int k = from; k < to; k++) {
+                final int m = k + averagingLength;
+                difference += samples[m] * samples[m] - samples[k] * samples[k];
+            }
+            return i == to ? Long.signum(difference) : -Long.signum(difference);
+        }
+
+        private void average() {
+            this.averagingLength = Math.max(getAveragingApertureLength(), 1);
+            this.averagedCount = AnalysingTools.averageCount(count, averagingLength);
+            if (averagedSums.length < averagedCount) {
+                averagedSums = new float[averagedCount];
+            }
+            AnalysingTools.slidingSumsOfSquares(averagedSums, samples, count, averagingLength);
+            final int numberOfBlocks = averagedCount / BLOCK_LENGTH;
+            if (blockMinimums.length < numberOfBlocks) {
+                blockMinimums = new float[numberOfBlocks];
+            }
+            for (int block = 0, k = 0; block < numberOfBlocks; block++) {
+                float min = Float.POSITIVE_INFINITY;
+                for (int to = k + BLOCK_LENGTH; k < to; k++) {
+                    min = Math.min(min, averagedSums[k]);
+                }
+                blockMinimums[block] = min;
+            }
+        }
+
+        private void averageImpulse() {
+            this.averagingImpulseLength = Math.max(getAveragingImpulseApertureLength(), 1);
+            this.averagedImpulseCount = AnalysingTools.averageCount(count, averagingImpulseLength);
+            if (averagedImpulseSums.length < averagedImpulseCount) {
+                averagedImpulseSums = new float[averagedImpulseCount];
+            }
+            AnalysingTools.slidingSumsOfSquares(averagedImpulseSums, samples, count, averagingImpulseLength);
+        }
+
+        private static double[] scale(float[] values, int count, double multiplier) {
+            final double[] result = new double[count];
+            for (int k = 0; k < count; k++) {
+                result[k] = values[k] * multiplier;
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.envionsoftware.sounds.analysis;
+
+import java.util.Arrays;
+import java.util.function.IntBinaryOperator;
+
+// Finds all local maximums in the aperture 2 * apertureHalf + 1 in one pass, O(N) operations:
+// index i is a local maximum if values[i - k] < values[i] and values[i + k] <= values[i] for 0 < k < apertureHalf
+// (in an improbable case of several equal values we choose the left sample as a local maximum,
+// like in AudioLocalMaximumApertureInfo.analyseSample).
+// When values[j] > values[i] is found at the right of i, no index in i..j-1 can be a maximum, so we skip to j;
+// when i is checked to be not less than all its right neighbours, no index among them can be a maximum.
+// So, every element is compared at most once while checking the right side and at most once while checking
+// the left side. In smooth (averaged) signal most indexes are skipped after 1 comparison.
+final class LocalMaximumDetector {
+    private int[] localMaximums = new int[0];
+    private int numberOfLocalMaximums = 0;
+
+    int numberOfLocalMaximums() {
+        return numberOfLocalMaximums;
+    }
+
+    int localMaximum(int k) {
+        return localMaximums[k];
+    }
+
+    // Finds local maximums i, for which apertureHalf <= i < count - apertureHalf
+    // (both sides of the aperture must be inside the array)
+    void findLocalMaximums(double[] values, int count, int apertureHalf) {
+        findLocalMaximums(values, Math.max(apertureHalf, 0), count - Math.max(apertureHalf, 0), apertureHalf);
+    }
+
+    // Finds local maximums in from <= i < to; all elements from - apertureHalf + 1 .. to + apertureHalf - 2
+    // must exist
+    void findLocalMaximums(double[] values, int from, int to, int apertureHalf) {
+        numberOfLocalMaximums = 0;
+        final int neighbours = apertureHalf - 1;
+        if (neighbours <= 0) {
+            for (int i = from; i < to; i++) {
+                addLocalMaximum(i);
+            }
+            return;
+        }
+        for (int i = from; i < to; ) {
+            final double v = values[i];
+            int greater = -1;
+            for (int j = i + 1, jMax = i + neighbours; j <= jMax; j++) {
+                if (values[j] > v) {
+                    greater = j;
+                    break;
+                }
+            }
+            if (greater != -1) {
+                i = greater;
+                continue;
+            }
+            boolean maximum = true;
+            for (int j = i - 1, jMin = i - neighbours; j >= jMin; j--) {
+                if (values[j] >= v) {
+                    maximum = false;
+                    break;
+                }
+            }
+            if (maximum) {
+                addLocalMaximum(i);
+            }
+            i += neighbours + 1;
+        }
+    }
+
+    // The same for float values, which are rounded from some exact values: if values[i] == values[j],
+    // exactComparator.applyAsInt(i, j) must return the sign of (exact value i - exact value j)
+    void findLocalMaximums(float[] values, int from, int to, int apertureHalf, IntBinaryOperator exactComparator) {
+        numberOfLocalMaximums = 0;
+        final int neighbours = apertureHalf - 1;
+        if (neighbours <= 0) {
+            for (int i = from; i < to; i++) {
+                addLocalMaximum(i);
+            }
+            return;
+        }
+        for (int i = from; i < to; ) {
+            final float v = values[i];
+            int greater = -1;
+            for (int j = i + 1, jMax = i + neighbours; j <= jMax; j++) {
+                final float w = values[j];
+                if (w > v || (w == v && exactComparator.applyAsInt(j, i) > 0)) {
+                    greater = j;
+                    break;
+                }
+            }
+            if (greater != -1) {
+                i = greater;
+                continue;
+            }
+            boolean maximum = true;
+            for (int j = i - 1, jMin = i - neighbours; j >= jMin; j--) {
+                final float w = values[j];
+                if (w > v || (w == v && exactComparator.applyAsInt(j, i) >= 0)) {
+                    maximum = false;
+                    break;
+                }
+            }
+            if (maximum) {
+                addLocalMaximum(i);
+            }
+            i += neighbours + 1;
+        }
+    }
+
+    private void addLocalMaximum(int index) {
+        if (numberOfLocalMaximums == localMaximums.length) {
+            localMaximums = Arrays.copyOf(localMaximums, Math.max(16, 2 * localMaximums.length));
+        }
+        localMaximums[numberOfLocalMaximums++] = index;
+    }
+}
@@ -0,0 +1,303 @@
+package com.envionsoftware.sounds.analysis;
+
+import java.util.Arrays;
+import java.util.List;
+
+// Columnar storage of analysis results (one row per AudioLocalMaximumApertureInfo): primitive arrays,
+// which are reused by the following analyze() calls and grow only when necessary, so the analysis
+// does not allocate objects for found maximums. Rows can be read by the flyweight Cursor;
+// the lists of AudioLocalMaximumApertureInfo are built only by request (see AudioAnalyser.allLocalMaximums).
+public final class LocalMaximumTable {
+    // Flags of a row:
+    public static final int LOCAL_MAXIMUM = 1;
+    public static final int GOOD_LOCAL_MAXIMUM = 1 << 1;
+    public static final int TOO_LOW_RATIO_TO_TYPICAL_SIGNAL = 1 << 2;
+    public static final int TOO_LOW_RATIO_TO_LOW_SIGNAL = 1 << 3;
+    public static final int CANNOT_FIND_SHORT_IMPULSE = 1 << 4;
+    public static final int SHORT_IMPULSE = 1 << 5;
+    public static final int TOO_SHORT_SILENCE_BEFORE_IMPULSE = 1 << 6;
+    public static final int TOO_SHORT_SILENCE_AFTER_IMPULSE = 1 << 7;
+
+    private int size = 0;
+    private int numberOfGoodLocalMaximums = 0;
+    private int[] flags = new int[0];
+    private int[] sampleIndex = new int[0];
+    private long[] absoluteSampleIndex = new long[0];
+    private double[] timeStamp = new double[0];
+    private double[] maxAmplitude = new double[0];
+    private double[] minAmplitude = new double[0];
+    private double[] lowPercentileAmplitude = new double[0];
+    private int[] shortImpulseLeft = new int[0];
+    private int[] shortImpulseRight = new int[0];
+    private double[] shortImpulseAmplitude = new double[0];
+    private double[] wideApertureHalfDuration = new double[0];
+    private double[] impulseDuration = new double[0];
+
+    LocalMaximumTable() {
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int numberOfGoodLocalMaximums() {
+        return numberOfGoodLocalMaximums;
+    }
+
+    public int flags(int row) {
+        checkRow(row);
+        return flags[row];
+    }
+
+    public boolean isGoodLocalMaximum(int row) {
+        return (flags(row) & GOOD_LOCAL_MAXIMUM) != 0;
+    }
+
+    public long absoluteSampleIndex(int row) {
+        checkRow(row);
+        return absoluteSampleIndex[row];
+    }
+
+    // Returns new cursor, placed before the first row: call next() or moveTo(row) before reading
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    // Returns new object with all information about the row
+    public AudioLocalMaximumApertureInfo info(int row) {
+        final AudioLocalMaximumApertureInfo result = new AudioLocalMaximumApertureInfo();
+        readRow(row, result);
+        return result;
+    }
+
+    void readRow(int row, AudioLocalMaximumApertureInfo result) {
+        checkRow(row);
+        final int f = flags[row];
+        result.localMaximum = (f & LOCAL_MAXIMUM) != 0;
+        result.goodLocalMaximum = (f & GOOD_LOCAL_MAXIMUM) != 0;
+        result.tooLowRatioToTypicalSignal = (f & TOO_LOW_RATIO_TO_TYPICAL_SIGNAL) != 0;
+        result.tooLowRatioToLowSignal = (f & TOO_LOW_RATIO_TO_LOW_SIGNAL) != 0;
+        result.cannotFindShortImpulse = (f & CANNOT_FIND_SHORT_IMPULSE) != 0;
+        result.shortImpulse = (f & SHORT_IMPULSE) != 0;
+        result.tooShortSilenceBeforeImpulse = (f & TOO_SHORT_SILENCE_BEFORE_IMPULSE) != 0;
+        result.tooShortSilenceAfterImpulse = (f & TOO_SHORT_SILENCE_AFTER_IMPULSE) != 0;
+        result.localMaximumSampleIndex = sampleIndex[row];
+        result.absoluteSampleIndex = absoluteSampleIndex[row];
+        result.localMaximumSampleTimeStamp = timeStamp[row];
+        result.maxAveragedAbsoluteAmplitude = maxAmplitude[row];
+        result.minAveragedAbsoluteAmplitude = minAmplitude[row];
+        result.lowPercentileAveragedAbsoluteAmplitude = lowPercentileAmplitude[row];
+        result.shortImpulseLeft = shortImpulseLeft[row];
+        result.shortImpulseRight = shortImpulseRight[row];
+        result.shortImpulseAbsoluteAmplitude = shortImpulseAmplitude[row];
+        result.wideApertureHalfDuration = wideApertureHalfDuration[row];
+        result.impulseDuration = impulseDuration[row];
+    }
+
+    // Adds new objects for all rows to "all" list and the same objects for good local maximums to "good" list
+    void addInfos(List<AudioLocalMaximumApertureInfo> all, List<AudioLocalMaximumApertureInfo> good) {
+        for (int row = 0; row < size; row++) {
+            final AudioLocalMaximumApertureInfo info = info(row);
+            all.add(info);
+            if (info.isGoodLocalMaximum()) {
+                good.add(info);
+            }
+        }
+    }
+
+    void clear() {
+        size = 0;
+        numberOfGoodLocalMaximums = 0;
+    }
+
+    void add(AudioLocalMaximumApertureInfo info) {
+        if (size == flags.length) {
+            ensureCapacity(Math.max(16, 2 * size));
+        }
+        final int row = size++;
+        flags[row] = (info.localMaximum ? LOCAL_MAXIMUM : 0)
+            | (info.goodLocalMaximum ? GOOD_LOCAL_MAXIMUM : 0)
+            | (info.tooLowRatioToTypicalSignal ? TOO_LOW_RATIO_TO_TYPICAL_SIGNAL : 0)
+            | (info.tooLowRatioToLowSignal ? TOO_LOW_RATIO_TO_LOW_SIGNAL : 0)
+            | (info.cannotFindShortImpulse ? CANNOT_FIND_SHORT_IMPULSE : 0)
+            | (info.shortImpulse ? SHORT_IMPULSE : 0)
+            | (info.tooShortSilenceBeforeImpulse ? TOO_SHORT_SILENCE_BEFORE_IMPULSE : 0)
+            | (info.tooShortSilenceAfterImpulse ? TOO_SHORT_SILENCE_AFTER_IMPULSE : 0);
+        sampleIndex[row] = info.localMaximumSampleIndex;
+        absoluteSampleIndex[row] = info.absoluteSampleIndex;
+        timeStamp[row] = info.localMaximumSampleTimeStamp;
+        maxAmplitude[row] = info.maxAveragedAbsoluteAmplitude;
+        minAmplitude[row] = info.minAveragedAbsoluteAmplitude;
+        lowPercentileAmplitude[row] = info.lowPercentileAveragedAbsoluteAmplitude;
+        shortImpulseLeft[row] = info.shortImpulseLeft;
+        shortImpulseRight[row] = info.shortImpulseRight;
+        shortImpulseAmplitude[row] = info.shortImpulseAbsoluteAmplitude;
+        wideApertureHalfDuration[row] = info.wideApertureHalfDuration;
+        impulseDuration[row] = info.impulseDuration;
+        if (info.goodLocalMaximum) {
+            numberOfGoodLocalMaximums++;
+        }
+    }
+
+    void addRow(LocalMaximumTable other, int row) {
+        other.checkRow(row);
+        if (size == flags.length) {
+            ensureCapacity(Math.max(16, 2 * size));
+        }
+        final int k = size++;
+        flags[k] = other.flags[row];
+        sampleIndex[k] = other.sampleIndex[row];
+        absoluteSampleIndex[k] = other.absoluteSampleIndex[row];
+        timeStamp[k] = other.timeStamp[row];
+        maxAmplitude[k] = other.maxAmplitude[row];
+        minAmplitude[k] = other.minAmplitude[row];
+        lowPercentileAmplitude[k] = other.lowPercentileAmplitude[row];
+        shortImpulseLeft[k] = other.shortImpulseLeft[row];
+        shortImpulseRight[k] = other.shortImpulseRight[row];
+        shortImpulseAmplitude[k] = other.shortImpulseAmplitude[row];
+        wideApertureHalfDuration[k] = other.wideApertureHalfDuration[row];
+        impulseDuration[k] = other.impulseDuration[row];
+        if ((flags[k] & GOOD_LOCAL_MAXIMUM) != 0) {
+            numberOfGoodLocalMaximums++;
+        }
+    }
+
+    void addAll(LocalMaximumTable other) {
+        if (size + other.size > flags.length) {
+            ensureCapacity(Math.max(size + other.size, 2 * size));
+        }
+        final int n = other.size;
+        System.arraycopy(other.flags, 0, flags, size, n);
+        System.arraycopy(other.sampleIndex, 0, sampleIndex, size, n);
+        System.arraycopy(other.absoluteSampleIndex, 0, absoluteSampleIndex, size, n);
+        System.arraycopy(other.timeStamp, 0, timeStamp, size, n);
+        System.arraycopy(other.maxAmplitude, 0, maxAmplitude, size, n);
+        System.arraycopy(other.minAmplitude, 0, minAmplitude, size, n);
+        System.arraycopy(other.lowPercentileAmplitude, 0, lowPercentileAmplitude, size, n);
+        System.arraycopy(other.shortImpulseLeft, 0, shortImpulseLeft, size, n);
+        System.arraycopy(other.shortImpulseRight, 0, shortImpulseRight, size, n);
+        System.arraycopy(other.shortImpulseAmplitude, 0, shortImpulseAmplitude, size, n);
+        System.arraycopy(other.wideApertureHalfDuration, 0, wideApertureHalfDuration, size, n);
+        System.arraycopy(other.impulseDuration, 0, impulseDuration, size, n);
+        size += n;
+        numberOfGoodLocalMaximums += other.numberOfGoodLocalMaximums;
+    }
+
+    private void ensureCapacity(int capacity) {
+        flags = Arrays.copyOf(flags, capacity);
+        sampleIndex = Arrays.copyOf(sampleIndex, capacity);
+        absoluteSampleIndex = Arrays.copyOf(absoluteSampleIndex, capacity);
+        timeStamp = Arrays.copyOf(timeStamp, capacity);
+        maxAmplitude = Arrays.copyOf(maxAmplitude, capacity);
+        minAmplitude = Arrays.copyOf(minAmplitude, capacity);
+        lowPercentileAmplitude = Arrays.copyOf(lowPercentileAmplitude, capacity);
+        shortImpulseLeft = Arrays.copyOf(shortImpulseLeft, capacity);
+        shortImpulseRight = Arrays.copyOf(shortImpulseRight, capacity);
+        shortImpulseAmplitude = Arrays.copyOf(shortImpulseAmplitude, capacity);
+        wideApertureHalfDuration = Arrays.copyOf(wideApertureHalfDuration, capacity);
+        impulseDuration = Arrays.copyOf(impulseDuration, capacity);
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " is out of range 0.." + (size - 1));
+        }
+    }
+
+    // Flyweight view of one row: the same methods as in AudioLocalMaximumApertureInfo without creating objects.
+    // The cursor is valid until the next analysis.
+    public final class Cursor {
+        private int row = -1;
+
+        private Cursor() {
+        }
+
+        public int row() {
+            return row;
+        }
+
+        public Cursor moveTo(int row) {
+            checkRow(row);
+            this.row = row;
+            return this;
+        }
+
+        // Moves to the next row; returns false if there are no more rows
+        public boolean next() {
+            if (row + 1 >= size) {
+                return false;
+            }
+            row++;
+            return true;
+        }
+
+        // Moves to the next good local maximum; returns false if there are no more good maximums
+        public boolean nextGood() {
+            for (int k = row + 1; k < size; k++) {
+                if ((flags[k] & GOOD_LOCAL_MAXIMUM) != 0) {
+                    row = k;
+                    return true;
+                }
+            }
+            row = size;
+            return false;
+        }
+
+        public int flags() {
+            return flags[row];
+        }
+
+        public boolean isLocalMaximum() {
+            return (flags[row] & LOCAL_MAXIMUM) != 0;
+        }
+
+        public boolean isGoodLocalMaximum() {
+            return (flags[row] & GOOD_LOCAL_MAXIMUM) != 0;
+        }
+
+        public int getLocalMaximumSampleIndex() {
+            return sampleIndex[row];
+        }
+
+        public double getLocalMaximumSampleTimeStamp() {
+            return timeStamp[row];
+        }
+
+        public long getAbsoluteSampleIndex() {
+            return absoluteSampleIndex[row];
+        }
+
+        public double getMaxAveragedAbsoluteAmplitude() {
+            return maxAmplitude[row];
+        }
+
+        public double getMinAveragedAbsoluteAmplitude() {
+            return minAmplitude[row];
+        }
+
+        public double getLowPercentileAveragedAbsoluteAmplitude() {
+            return lowPercentileAmplitude[row];
+        }
+
+        public boolean isShortImpulse() {
+            return (flags[row] & SHORT_IMPULSE) != 0;
+        }
+
+        public int getShortImpulseLeft() {
+            return shortImpulseLeft[row];
+        }
+
+        public int getShortImpulseRight() {
+            return shortImpulseRight[row];
+        }
+
+        public double getShortImpulseAbsoluteAmplitude() {
+            return shortImpulseAmplitude[row];
+        }
+
+        @Override
+        public String toString() {
+            return row < 0 || row >= size ? "cursor outside the table" : info(row).toString();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.envionsoftware.sounds.analysis;
+
+import java.util.Arrays;
+
+// One-pass percentile estimation for a stream of non-negative values of unknown range (like averaged squares
+// of a long recording) in constant memory. A bar is a range of doubles with the same exponent and the same
+// highest MANTISSA_BITS bits of mantissa, i.e. the bar index is just a shift of the IEEE 754 representation;
+// every octave 2^e..2^(e+1) is split into 2^MANTISSA_BITS equal bars, so the middle of the found bar differs
+// from the exact percentile less than 2^-(MANTISSA_BITS+1) relatively (0.8% for energy, 0.4% for amplitude).
+// Values less than 2^MIN_EXPONENT are counted in the first bar (zeros separately), values not less than
+// 2^MAX_EXPONENT are counted in the last bar.
+final class LogarithmicHistogram {
+    private static final int MANTISSA_BITS = 6;
+    private static final int SHIFT = 52 - MANTISSA_BITS;
+    private static final int MIN_EXPONENT = -128;
+    private static final int MAX_EXPONENT = 128;
+    private static final long MIN_BITS = Double.doubleToRawLongBits(Math.scalb(1.0, MIN_EXPONENT)) >>> SHIFT;
+    private static final int NUMBER_OF_BARS = (MAX_EXPONENT - MIN_EXPONENT) << MANTISSA_BITS;
+
+    private final long[] bars = new long[NUMBER_OF_BARS];
+    private long numberOfZeros = 0;
+    private long count = 0;
+
+    void clear() {
+        Arrays.fill(bars, 0);
+        numberOfZeros = 0;
+        count = 0;
+    }
+
+    long count() {
+        return count;
+    }
+
+    void add(double value) {
+        if (value > 0.0) {
+            final long bar = (Double.doubleToRawLongBits(value) >>> SHIFT) - MIN_BITS;
+            bars[bar < 0 ? 0 : bar >= NUMBER_OF_BARS ? NUMBER_OF_BARS - 1 : (int) bar]++;
+        } else {
+            numberOfZeros++;
+            // - negative values are impossible for squares; they are also considered as zeros
+        }
+        count++;
+    }
+
+    void add(double[] values, int from, int to) {
+        for (int k = from; k < to; k++) {
+            add(values[k]);
+        }
+    }
+
+    // Estimation of the value at position round(level * count) in the sorted sequence
+    // (like AnalysingTools.percentile); NaN if there are no values
+    double percentile(double level) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        long rank = Math.min(Math.max(Math.round(level * count), 0), count - 1);
+        if (rank < numberOfZeros) {
+            return 0.0;
+        }
+        rank -= numberOfZeros;
+        int bar = 0;
+        while (bar < NUMBER_OF_BARS - 1 && rank >= bars[bar]) {
+            rank -= bars[bar];
+            bar++;
+        }
+        return Double.longBitsToDouble((bar + MIN_BITS) << SHIFT | 1L << (SHIFT - 1));
+        // - the middle of the bar
+    }
+}
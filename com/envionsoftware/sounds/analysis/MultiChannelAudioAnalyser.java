@@ -0,0 +1,201 @@
+package com.envionsoftware.sounds.analysis;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Analyses several channels of the same recording by independent {@link AudioAnalyser} instances,
+ * in parallel (one task per channel), and merges good local maximums of all channels.
+ * The thread pool, created for numberOfThreads &gt; 1, is shut down by {@link #close()};
+ * a pool, passed to {@link #setForkJoinPool}, is used instead and is never shut down by this class.
+ */
+public class MultiChannelAudioAnalyser implements AutoCloseable {
+    private final AudioAnalyser[] analysers;
+    private int numberOfThreads = 1;
+    private ForkJoinPool ownPool = null;
+    // - created by analyze() when necessary
+    private ForkJoinPool externalPool = null;
+    // - supplied by the caller, who is responsible for its shutdown
+    private double mergingDistance;
+    // - good maximums in different channels, closer than this (in seconds), are considered as the same event
+
+    private final List<ChannelLocalMaximum> mergedGoodLocalMaximums = new ArrayList<>();
+
+    public MultiChannelAudioAnalyser(double singleSampleDurationInSeconds, int numberOfChannels) {
+        if (numberOfChannels <= 0) {
+            throw new IllegalArgumentException("Zero or negative number of channels");
+        }
+        this.analysers = new AudioAnalyser[numberOfChannels];
+        for (int k = 0; k < numberOfChannels; k++) {
+            analysers[k] = new AudioAnalyser(singleSampleDurationInSeconds);
+        }
+        this.mergingDistance = analysers[0].getLocalMaxAperture() / 2;
+    }
+
+    public int numberOfChannels() {
+        return analysers.length;
+    }
+
+    // Analyser of the given channel: can be used for customizing parameters and for getting per-channel results
+    public AudioAnalyser analyser(int channel) {
+        return analysers[channel];
+    }
+
+    // Copies all customizable parameters of the given analyser into analysers of all channels
+    public void setParameters(AudioAnalyser parameters) {
+        for (AudioAnalyser analyser : analysers) {
+            analyser.copyParameters(parameters);
+        }
+        this.mergingDistance = parameters.getLocalMaxAperture() / 2;
+    }
+
+    public int getNumberOfThreads() {
+        return numberOfThreads;
+    }
+
+    public void setNumberOfThreads(int numberOfThreads) {
+        if (numberOfThreads <= 0) {
+            throw new IllegalArgumentException("Zero or negative number of threads");
+        }
+        if (numberOfThreads != this.numberOfThreads) {
+            shutdownOwnPool();
+        }
+        this.numberOfThreads = numberOfThreads;
+    }
+
+    public ForkJoinPool getForkJoinPool() {
+        return externalPool;
+    }
+
+    // If not null, channels are analysed in this pool, and numberOfThreads is ignored
+    public void setForkJoinPool(ForkJoinPool forkJoinPool) {
+        if (forkJoinPool != null) {
+            shutdownOwnPool();
+        }
+        this.externalPool = forkJoinPool;
+    }
+
+    public double getMergingDistance() {
+        return mergingDistance;
+    }
+
+    public void setMergingDistance(double mergingDistance) {
+        if (mergingDistance < 0.0) {
+            throw new IllegalArgumentException("Negative merging distance");
+        }
+        this.mergingDistance = mergingDistance;
+    }
+
+    public void setSamples(int channel, double[] samples) {
+        analysers[channel].setSamples(samples);
+    }
+
+    public void setSamples(int channel, int count, SampleSource source) {
+        analysers[channel].setSamples(count, source);
+    }
+
+    // Performs preprocess(), analyze() and postprocessFoundMaximums() for all channels
+    public void analyze() {
+        final List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (AudioAnalyser analyser : analysers) {
+            if (analyser.count() > 0) {
+                tasks.add(ForkJoinTask.adapt(() -> {
+                    analyser.preprocess();
+                    analyser.analyze();
+                    analyser.postprocessFoundMaximums();
+                }));
+            }
+        }
+        if (externalPool == null && numberOfThreads == 1) {
+            for (ForkJoinTask<?> task : tasks) {
+                task.invoke();
+            }
+        } else {
+            ForkJoinPool pool = externalPool;
+            if (pool == null) {
+                if (ownPool == null) {
+                    ownPool = new ForkJoinPool(numberOfThreads);
+                }
+                pool = ownPool;
+            }
+            pool.submit(() -> ForkJoinTask.invokeAll(tasks)).join();
+        }
+        mergeGoodLocalMaximums();
+    }
+
+    // Shuts down the thread pool, created by analyze(); the analyser can be used further
+    // (the next parallel analyze() will create a new pool)
+    @Override
+    public void close() {
+        shutdownOwnPool();
+    }
+
+    private void shutdownOwnPool() {
+        if (ownPool != null) {
+            ownPool.shutdown();
+            ownPool = null;
+        }
+    }
+
+    // Good local maximums of all channels, sorted by time; from several maximums in different channels,
+    // closer than mergingDistance, only the strongest one is included
+    public List<ChannelLocalMaximum> mergedGoodLocalMaximums() {
+        return mergedGoodLocalMaximums;
+    }
+
+    private void mergeGoodLocalMaximums() {
+        final List<ChannelLocalMaximum> all = new ArrayList<>();
+        for (int channel = 0; channel < analysers.length; channel++) {
+            for (AudioLocalMaximumApertureInfo info : analysers[channel].goodLocalMaximums()) {
+                all.add(new ChannelLocalMaximum(channel, info));
+            }
+        }
+        all.sort(Comparator.comparingLong(m -> m.getInfo().getAbsoluteSampleIndex()));
+        // - stable sorting: equal indexes remain in the order of channels
+        mergedGoodLocalMaximums.clear();
+        ChannelLocalMaximum last = null;
+        for (ChannelLocalMaximum maximum : all) {
+            if (last != null
+                && maximum.getInfo().getLocalMaximumSampleTimeStamp()
+                - last.getInfo().getLocalMaximumSampleTimeStamp() <= mergingDistance)
+            {
+                final int lastIndex = mergedGoodLocalMaximums.size() - 1;
+                if (maximum.getInfo().getMaxAveragedAbsoluteAmplitude()
+                    > mergedGoodLocalMaximums.get(lastIndex).getInfo().getMaxAveragedAbsoluteAmplitude())
+                {
+                    mergedGoodLocalMaximums.set(lastIndex, maximum);
+                }
+                // - the distance is measured from the first maximum of the event
+                continue;
+            }
+            mergedGoodLocalMaximums.add(maximum);
+            last = maximum;
+        }
+    }
+
+    public static final class ChannelLocalMaximum {
+        private final int channel;
+        private final AudioLocalMaximumApertureInfo info;
+
+        ChannelLocalMaximum(int channel, AudioLocalMaximumApertureInfo info) {
+            this.channel = channel;
+            this.info = info;
+        }
+
+        public int getChannel() {
+            return channel;
+        }
+
+        public AudioLocalMaximumApertureInfo getInfo() {
+            return info;
+        }
+
+        @Override
+        public String toString() {
+            return "channel " + channel + " " + info;
+        }
+    }
+}
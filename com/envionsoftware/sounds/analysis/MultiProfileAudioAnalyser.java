@@ -0,0 +1,99 @@
+package com.envionsoftware.sounds.analysis;
+
+/**
+ * Analyses the same samples with several sets of parameters (profiles), for example, for cries,
+ * for claps with small local maximum aperture and for long alarms. Every profile is an {@link AudioAnalyser}
+ * with its own results, but the samples are copied and squared only once, and averaged arrays
+ * (and typical signal) are calculated only once for all profiles with the same averaging apertures.
+ */
+public class MultiProfileAudioAnalyser {
+    private final AudioAnalyser[] profiles;
+    private int numberOfSharedAveragedArrays = 0;
+
+    public MultiProfileAudioAnalyser(double singleSampleDurationInSeconds, int numberOfProfiles) {
+        if (numberOfProfiles <= 0) {
+            throw new IllegalArgumentException("Zero or negative number of profiles");
+        }
+        this.profiles = new AudioAnalyser[numberOfProfiles];
+        for (int k = 0; k < numberOfProfiles; k++) {
+            profiles[k] = new AudioAnalyser(singleSampleDurationInSeconds);
+        }
+    }
+
+    public int numberOfProfiles() {
+        return profiles.length;
+    }
+
+    // Analyser of the given profile: can be used for customizing parameters and for getting the results
+    // (samples must be set by setSamples of this object)
+    public AudioAnalyser profile(int index) {
+        return profiles[index];
+    }
+
+    // Copies all customizable parameters of the given analyser into the analyser of the given profile
+    public void setParameters(int index, AudioAnalyser parameters) {
+        profiles[index].copyParameters(parameters);
+    }
+
+    public void setSamples(double[] samples) {
+        setSamples(samples, 0, samples.length);
+    }
+
+    public void setSamples(double[] samples, int offset, int count) {
+        profiles[0].setSamples(samples, offset, count);
+        for (int k = 1; k < profiles.length; k++) {
+            profiles[k].shareSamples(profiles[0]);
+        }
+    }
+
+    // Number of averaged arrays (usual and impulse), which were not calculated by the last analyze() call,
+    // but were taken from a previous profile with the same aperture
+    public int numberOfSharedAveragedArrays() {
+        return numberOfSharedAveragedArrays;
+    }
+
+    // Performs preprocess(), analyze() and postprocessFoundMaximums() for all profiles in order of their indexes
+    public void analyze() {
+        if (profiles[0].count() == 0) {
+            throw new IllegalStateException("Samples are not set");
+        }
+        numberOfSharedAveragedArrays = 0;
+        for (int k = 0; k < profiles.length; k++) {
+            final AudioAnalyser profile = profiles[k];
+            AudioAnalyser averagingSource = null;
+            AudioAnalyser impulseAveragingSource = null;
+            if (sharesSamples(k) && profile.getDecimation() == 1) {
+                for (int j = 0; j < k; j++) {
+                    final AudioAnalyser previous = profiles[j];
+                    if (!sharesSamples(j) || previous.getDecimation() != 1) {
+                        // - its averaged arrays are calculated for other samples or not calculated at all
+                        // (it analyses the decimated envelope)
+                        continue;
+                    }
+                    if (averagingSource == null && previous.averagingSource() == null
+                        && previous.getAveragingApertureLength() == profile.getAveragingApertureLength())
+                    {
+                        averagingSource = previous;
+                    }
+                    if (impulseAveragingSource == null && previous.impulseAveragingSource() == null
+                        && previous.getAveragingImpulseApertureLength()
+                        == profile.getAveragingImpulseApertureLength())
+                    {
+                        impulseAveragingSource = previous;
+                    }
+                }
+                profile.setAveragingSources(averagingSource, impulseAveragingSource);
+                numberOfSharedAveragedArrays += (averagingSource != null ? 1 : 0)
+                    + (impulseAveragingSource != null ? 1 : 0);
+            }
+            profile.preprocess();
+            profile.analyze();
+            profile.postprocessFoundMaximums();
+        }
+    }
+
+    // Profile 0 stores the samples, other profiles use them while they are not set separately
+    private boolean sharesSamples(int index) {
+        return index == 0 || profiles[index].samplesSource() == profiles[0];
+    }
+}
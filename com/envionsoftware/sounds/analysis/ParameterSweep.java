@@ -0,0 +1,409 @@
+package com.envionsoftware.sounds.analysis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.ObjDoubleConsumer;
+
+/**
+ * Tunes parameters of {@link AudioAnalyser}: analyses a labelled corpus (recordings with known times of events)
+ * with every configuration of the parameter grid (all combinations of the given parameter values) and finds
+ * precision, recall and runtime of every configuration. Samples of every recording are squared once
+ * for all configurations, and averaged arrays are calculated once for every distinct pair of averaging apertures
+ * (see {@link MultiProfileAudioAnalyser}); tasks (recording, averaging apertures) are evaluated in parallel.
+ */
+public class ParameterSweep {
+    public enum Parameter {
+        GLOBAL_AMPLITUDE_OF_LOUD_SOUND(AudioAnalyser::setGlobalAmplitudeOfLoudSound),
+        TYPICAL_SIGNAL_PERCENTILE(AudioAnalyser::setTypicalSignalPercentile),
+        AVERAGING_APERTURE(AudioAnalyser::setAveragingAperture),
+        AVERAGING_IMPULSE_APERTURE(AudioAnalyser::setAveragingImpulseAperture),
+        LOCAL_MAX_APERTURE(AudioAnalyser::setLocalMaxAperture),
+        MIN_RATIO_OF_GOOD_MAXIMUM_AND_TYPICAL_SIGNAL(AudioAnalyser::setMinRatioOfGoodMaximumAndTypicalSignal),
+        LOCAL_MAX_WIDE_APERTURE(AudioAnalyser::setLocalMaxWideAperture),
+        LOCAL_MAX_LOW_SIGNAL_PERCENTILE(AudioAnalyser::setLocalMaxLowSignalPercentile),
+        MIN_RATIO_OF_GOOD_MAXIMUM_AND_LOW_SIGNAL(AudioAnalyser::setMinRatioOfGoodMaximumAndLowSignal),
+        MAX_IMPULSE_DURATION(AudioAnalyser::setMaxImpulseDuration),
+        MIN_SILENCE_NEAR_IMPULSE_DURATION(AudioAnalyser::setMinSilenceNearImpulseDuration),
+        RATIO_OF_IMPULSE_AND_SILENCE(AudioAnalyser::setRatioOfImpulseAndSilence);
+
+        private final ObjDoubleConsumer<AudioAnalyser> setter;
+
+        Parameter(ObjDoubleConsumer<AudioAnalyser> setter) {
+            this.setter = setter;
+        }
+
+        public void set(AudioAnalyser analyser, double value) {
+            setter.accept(analyser, value);
+        }
+    }
+
+    private final AudioAnalyser baseParameters;
+    private final List<Recording> recordings = new ArrayList<>();
+    private final List<Parameter> parameters = new ArrayList<>();
+    private final List<double[]> parameterValues = new ArrayList<>();
+    private double matchingTolerance = 0.1;
+    // - a good local maximum and a labelled event, closer than this (in seconds), are considered as the same event
+    private int numberOfThreads = 1;
+
+    // Parameters, which are not included into the grid, are copied from baseParameters (when run() is called)
+    public ParameterSweep(AudioAnalyser baseParameters) {
+        this.baseParameters = Objects.requireNonNull(baseParameters, "Null base parameters");
+    }
+
+    // Adds a recording with sorted times (in seconds) of events, which should be detected;
+    // the samples are copied
+    public void addRecording(String name, double[] samples, double singleSampleDurationInSeconds,
+        double[] eventTimes)
+    {
+        Objects.requireNonNull(name, "Null recording name");
+        if (samples.length == 0) {
+            throw new IllegalArgumentException("Empty recording " + name);
+        }
+        final double[] times = eventTimes.clone();
+        for (int k = 1; k < times.length; k++) {
+            if (times[k] < times[k - 1]) {
+                throw new IllegalArgumentException("Event times of " + name + " are not sorted");
+            }
+        }
+        final AudioAnalyser samplesHolder = new AudioAnalyser(singleSampleDurationInSeconds);
+        samplesHolder.setSamples(samples);
+        recordings.add(new Recording(name, samplesHolder, times));
+    }
+
+    public int numberOfRecordings() {
+        return recordings.size();
+    }
+
+    // Adds a dimension of the grid: the parameter will be set to every value from the given list
+    public void addParameter(Parameter parameter, double... values) {
+        Objects.requireNonNull(parameter, "Null parameter");
+        if (values.length == 0) {
+            throw new IllegalArgumentException("Empty list of values of " + parameter);
+        }
+        if (parameters.contains(parameter)) {
+            throw new IllegalArgumentException("Parameter " + parameter + " is already added");
+        }
+        parameters.add(parameter);
+        parameterValues.add(values.clone());
+    }
+
+    // Number of configurations in the grid (product of numbers of values of all parameters)
+    public int numberOfConfigurations() {
+        long result = 1;
+        for (double[] values : parameterValues) {
+            result *= values.length;
+            if (result > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Too large parameter grid");
+            }
+        }
+        return (int) result;
+    }
+
+    public double getMatchingTolerance() {
+        return matchingTolerance;
+    }
+
+    public void setMatchingTolerance(double matchingTolerance) {
+        if (matchingTolerance < 0.0) {
+            throw new IllegalArgumentException("Negative matching tolerance");
+        }
+        this.matchingTolerance = matchingTolerance;
+    }
+
+    public int getNumberOfThreads() {
+        return numberOfThreads;
+    }
+
+    public void setNumberOfThreads(int numberOfThreads) {
+        if (numberOfThreads <= 0) {
+            throw new IllegalArgumentException("Zero or negative number of threads");
+        }
+        this.numberOfThreads = numberOfThreads;
+    }
+
+    // Evaluates all configurations of the grid on all recordings; results are in the order of configurations
+    // (the value of the last added parameter changes first)
+    public List<Result> run() {
+        if (recordings.isEmpty()) {
+            throw new IllegalStateException("No recordings");
+        }
+        final int numberOfConfigurations = numberOfConfigurations();
+        final Evaluation evaluation = new Evaluation(numberOfConfigurations, recordings.size());
+        final List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (int r = 0; r < recordings.size(); r++) {
+            final Recording recording = recordings.get(r);
+            recording.samplesHolder.prepareSharedSamples();
+            final int recordingIndex = r;
+            for (int[] group : groupsByAveragingApertures(recording, numberOfConfigurations)) {
+                tasks.add(ForkJoinTask.adapt(() -> evaluateGroup(recordingIndex, group, evaluation)));
+            }
+        }
+        if (numberOfThreads == 1) {
+            for (ForkJoinTask<?> task : tasks) {
+                task.invoke();
+            }
+        } else {
+            final ForkJoinPool pool = new ForkJoinPool(numberOfThreads);
+            try {
+                pool.submit(() -> ForkJoinTask.invokeAll(tasks)).join();
+            } finally {
+                pool.shutdown();
+            }
+        }
+        final List<Result> results = new ArrayList<>();
+        for (int c = 0; c < numberOfConfigurations; c++) {
+            results.add(evaluation.result(c, configurationValues(c)));
+        }
+        return results;
+    }
+
+    // Returns the result with the minimal runtime among results with the given precision and recall,
+    // or null if there are no such results
+    public static Result cheapestResult(List<Result> results, double minPrecision, double minRecall) {
+        Result best = null;
+        for (Result result : results) {
+            if (result.precision() >= minPrecision && result.recall() >= minRecall
+                && (best == null || result.getRuntimeNanos() < best.getRuntimeNanos()))
+            {
+                best = result;
+            }
+        }
+        return best;
+    }
+
+    private double[] configurationValues(int configuration) {
+        final double[] result = new double[parameters.size()];
+        for (int k = result.length - 1; k >= 0; k--) {
+            final double[] values = parameterValues.get(k);
+            result[k] = values[configuration % values.length];
+            configuration /= values.length;
+        }
+        return result;
+    }
+
+    private void setConfiguration(AudioAnalyser analyser, int configuration) {
+        analyser.copyParametersExceptDuration(baseParameters);
+        final double[] values = configurationValues(configuration);
+        for (int k = 0; k < values.length; k++) {
+            parameters.get(k).set(analyser, values[k]);
+        }
+    }
+
+    // Splits configurations into groups with equal lengths of both averaging apertures for this recording;
+    // with decimation, averaged arrays are not shared, and every configuration is a separate group
+    private List<int[]> groupsByAveragingApertures(Recording recording, int numberOfConfigurations) {
+        final AudioAnalyser probe = new AudioAnalyser(recording.singleSampleDuration());
+        probe.shareSamples(recording.samplesHolder);
+        final Map<Long, List<Integer>> groups = new LinkedHashMap<>();
+        for (int c = 0; c < numberOfConfigurations; c++) {
+            setConfiguration(probe, c);
+            final long key = probe.getDecimation() != 1 ?
+                -1 - c :
+                (long) probe.getAveragingApertureLength() << 32 | probe.getAveragingImpulseApertureLength();
+            groups.computeIfAbsent(key, k -> new ArrayList<>()).add(c);
+        }
+        final List<int[]> result = new ArrayList<>();
+        for (List<Integer> group : groups.values()) {
+            result.add(group.stream().mapToInt(Integer::intValue).toArray());
+        }
+        return result;
+    }
+
+    // Analyses the recording with all configurations of the group; averaged arrays are calculated
+    // by a separate source analyser, and all configurations are analysed by one analyser (reusing its memory)
+    private void evaluateGroup(int recordingIndex, int[] group, Evaluation evaluation) {
+        final Recording recording = recordings.get(recordingIndex);
+        final double singleSampleDuration = recording.singleSampleDuration();
+        final AudioAnalyser analyser = new AudioAnalyser(singleSampleDuration);
+        analyser.shareSamples(recording.samplesHolder);
+        AudioAnalyser source = null;
+        long averagingNanos = 0;
+        setConfiguration(analyser, group[0]);
+        if (analyser.getDecimation() == 1) {
+            source = new AudioAnalyser(singleSampleDuration);
+            source.shareSamples(recording.samplesHolder);
+            setConfiguration(source, group[0]);
+            final long t1 = System.nanoTime();
+            source.preprocessAveragingSource();
+            averagingNanos = System.nanoTime() - t1;
+        }
+        for (int configuration : group) {
+            setConfiguration(analyser, configuration);
+            analyser.setAveragingSources(source, source);
+            final long t1 = System.nanoTime();
+            analyser.preprocess();
+            analyser.analyze();
+            final long t2 = System.nanoTime();
+            evaluation.add(configuration, recordingIndex, analyser, recording.eventTimes, matchingTolerance,
+                averagingNanos + (t2 - t1));
+            // - runtime of standalone analysis is estimated as the time of analysis with shared arrays
+            // plus the time of calculating these arrays
+        }
+    }
+
+    public static final class Result {
+        private final Parameter[] parameters;
+        private final double[] values;
+        private final int truePositives;
+        private final int falsePositives;
+        private final int falseNegatives;
+        private final long runtimeNanos;
+
+        Result(Parameter[] parameters, double[] values,
+            int truePositives, int falsePositives, int falseNegatives, long runtimeNanos)
+        {
+            this.parameters = parameters;
+            this.values = values;
+            this.truePositives = truePositives;
+            this.falsePositives = falsePositives;
+            this.falseNegatives = falseNegatives;
+            this.runtimeNanos = runtimeNanos;
+        }
+
+        // Parameters of the grid in order of adding
+        public Parameter[] getParameters() {
+            return parameters.clone();
+        }
+
+        // Values of the parameters in this configuration
+        public double[] getValues() {
+            return values.clone();
+        }
+
+        public double getValue(Parameter parameter) {
+            for (int k = 0; k < parameters.length; k++) {
+                if (parameters[k] == parameter) {
+                    return values[k];
+                }
+            }
+            throw new IllegalArgumentException("Parameter " + parameter + " is not included into the grid");
+        }
+
+        // Sets the parameters of this configuration in the given analyser (other parameters are not changed)
+        public void apply(AudioAnalyser analyser) {
+            for (int k = 0; k < parameters.length; k++) {
+                parameters[k].set(analyser, values[k]);
+            }
+        }
+
+        // Good local maximums, matched with labelled events
+        public int getTruePositives() {
+            return truePositives;
+        }
+
+        // Good local maximums without labelled events
+        public int getFalsePositives() {
+            return falsePositives;
+        }
+
+        // Labelled events without good local maximums
+        public int getFalseNegatives() {
+            return falseNegatives;
+        }
+
+        // Total time of preprocess() and analyze() for all recordings (nanoseconds)
+        public long getRuntimeNanos() {
+            return runtimeNanos;
+        }
+
+        // 1.0 if there are no good local maximums
+        public double precision() {
+            final int found = truePositives + falsePositives;
+            return found == 0 ? 1.0 : (double) truePositives / found;
+        }
+
+        // 1.0 if there are no labelled events
+        public double recall() {
+            final int expected = truePositives + falseNegatives;
+            return expected == 0 ? 1.0 : (double) truePositives / expected;
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder sb = new StringBuilder();
+            for (int k = 0; k < parameters.length; k++) {
+                sb.append(k > 0 ? ", " : "").append(parameters[k]).append("=").append(values[k]);
+            }
+            return String.format("%s: precision %.4f, recall %.4f (%d/%d/%d), %.3f ms",
+                sb, precision(), recall(), truePositives, falsePositives, falseNegatives, runtimeNanos * 1e-6);
+        }
+    }
+
+    private static final class Recording {
+        final String name;
+        final AudioAnalyser samplesHolder;
+        // - stores squares of the samples and the scale of their energy sums, shared by all analysers
+        final double[] eventTimes;
+
+        Recording(String name, AudioAnalyser samplesHolder, double[] eventTimes) {
+            this.name = name;
+            this.samplesHolder = samplesHolder;
+            this.eventTimes = eventTimes;
+        }
+
+        double singleSampleDuration() {
+            return samplesHolder.getSingleSampleDuration();
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    // Counters for every pair (configuration, recording): every pair is filled by one task,
+    // so no synchronization is necessary (ForkJoinTask.invokeAll guarantees visibility after joining)
+    private final class Evaluation {
+        private final int[][] truePositives;
+        private final int[][] falsePositives;
+        private final int[][] falseNegatives;
+        private final long[][] runtimeNanos;
+
+        Evaluation(int numberOfConfigurations, int numberOfRecordings) {
+            this.truePositives = new int[numberOfConfigurations][numberOfRecordings];
+            this.falsePositives = new int[numberOfConfigurations][numberOfRecordings];
+            this.falseNegatives = new int[numberOfConfigurations][numberOfRecordings];
+            this.runtimeNanos = new long[numberOfConfigurations][numberOfRecordings];
+        }
+
+        // Matches good local maximums (sorted by time) with sorted event times: O(maximums + events)
+        void add(int configuration, int recording, AudioAnalyser analyser, double[] eventTimes, double tolerance,
+            long nanos)
+        {
+            int matched = 0;
+            int found = 0;
+            int event = 0;
+            final LocalMaximumTable.Cursor cursor = analyser.localMaximumTable().cursor();
+            while (cursor.nextGood()) {
+                found++;
+                final double time = cursor.getLocalMaximumSampleTimeStamp();
+                while (event < eventTimes.length && eventTimes[event] < time - tolerance) {
+                    event++;
+                    // - this event is missed
+                }
+                if (event < eventTimes.length && eventTimes[event] <= time + tolerance) {
+                    matched++;
+                    event++;
+                }
+            }
+            truePositives[configuration][recording] = matched;
+            falsePositives[configuration][recording] = found - matched;
+            falseNegatives[configuration][recording] = eventTimes.length - matched;
+            runtimeNanos[configuration][recording] = nanos;
+        }
+
+        Result result(int configuration, double[] values) {
+            return new Result(parameters.toArray(new Parameter[0]), values,
+                Arrays.stream(truePositives[configuration]).sum(),
+                Arrays.stream(falsePositives[configuration]).sum(),
+                Arrays.stream(falseNegatives[configuration]).sum(),
+                Arrays.stream(runtimeNanos[configuration]).sum());
+        }
+    }
+}
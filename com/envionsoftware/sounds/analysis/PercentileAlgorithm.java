@@ -0,0 +1,23 @@
+package com.envionsoftware.sounds.analysis;
+
+/**
+ * Algorithm, used by {@link AudioAnalyser} for finding percentiles of averaged signal.
+ */
+public enum PercentileAlgorithm {
+    /**
+     * Exact result: copying and full sorting, O(N log N).
+     */
+    SORTING,
+
+    /**
+     * Exact result (identical to {@link #SORTING}): copying and introselect, O(N).
+     */
+    SELECTION,
+
+    /**
+     * Approximate result: histogram of binary exponents, then histogram of 256 or 4096 bars inside
+     * the found octave, O(N). Maximal error (relatively to the percentile) is specified by
+     * {@link AudioAnalyser#setMaxPercentileHistogramError(double)}.
+     */
+    HISTOGRAM
+}
@@ -0,0 +1,95 @@
+package com.envionsoftware.sounds.analysis;
+
+// Finds minimums of ranges of some array by van Herk/Gil-Werman algorithm: the array is split into blocks
+// of the given length, and for every element we store the minimum from the block start to it (prefix)
+// and from it to the block end (suffix). Then any range, not longer than the block, is covered by a suffix
+// and a prefix of 2 neighbour blocks, and its minimum is found in O(1) operations.
+// Longer ranges are also supported: they require additional O(number of blocks) operations.
+// The tables are built while the first call after reset(), in O(N) operations.
+final class RangeMinimumFinder {
+    private static final int SHORT_RANGE = 32;
+    // - such ranges are processed by simple loop
+
+    private double[] values = null;
+    private int count = 0;
+    private int blockLength = 1;
+    private double[] prefixMin = new double[0];
+    private double[] suffixMin = new double[0];
+    private boolean ready = false;
+
+    // Must be called when the array is changed; blockLength should be equal to typical length of ranges
+    void reset(double[] values, int count, int blockLength) {
+        this.values = values;
+        this.count = count;
+        this.blockLength = Math.max(blockLength, 1);
+        this.ready = false;
+    }
+
+    // Builds the tables if necessary: after this, min() can be called from several threads
+    void prepare() {
+        if (!ready) {
+            build();
+        }
+    }
+
+    // Returns minimum of values[from..to] (inclusive), or +infinity if from > to
+    double min(int from, int to) {
+        if (from < 0 || to >= count) {
+            throw new IndexOutOfBoundsException("Invalid range " + from + ".." + to + " for " + count + " values");
+        }
+        if (to - from < SHORT_RANGE) {
+            return simpleMin(from, to);
+        }
+        if (!ready) {
+            build();
+        }
+        final int fromBlock = from / blockLength;
+        final int toBlock = to / blockLength;
+        if (fromBlock == toBlock) {
+            if (from == fromBlock * blockLength) {
+                return prefixMin[to];
+            }
+            if (to == Math.min(count, (toBlock + 1) * blockLength) - 1) {
+                return suffixMin[from];
+            }
+            return simpleMin(from, to);
+        }
+        double result = suffixMin[from] < prefixMin[to] ? suffixMin[from] : prefixMin[to];
+        for (int block = fromBlock + 1; block < toBlock; block++) {
+            final double blockMin = suffixMin[block * blockLength];
+            if (blockMin < result) {
+                result = blockMin;
+            }
+        }
+        return result;
+    }
+
+    private double simpleMin(int from, int to) {
+        return AnalysingTools.minValue(values, from, to + 1);
+    }
+
+    private void build() {
+        if (prefixMin.length < count) {
+            prefixMin = new double[count];
+            suffixMin = new double[count];
+        }
+        for (int blockStart = 0; blockStart < count; blockStart += blockLength) {
+            final int blockEnd = Math.min(count, blockStart + blockLength);
+            double min = Double.POSITIVE_INFINITY;
+            for (int k = blockStart; k < blockEnd; k++) {
+                if (values[k] < min) {
+                    min = values[k];
+                }
+                prefixMin[k] = min;
+            }
+            min = Double.POSITIVE_INFINITY;
+            for (int k = blockEnd - 1; k >= blockStart; k--) {
+                if (values[k] < min) {
+                    min = values[k];
+                }
+                suffixMin[k] = min;
+            }
+        }
+        ready = true;
+    }
+}
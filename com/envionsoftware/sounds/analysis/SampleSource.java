@@ -0,0 +1,8 @@
+package com.envionsoftware.sounds.analysis;
+
+// Fills an array by samples, for example, decoding them directly from a mapped audio file
+// (see AudioAnalyser.setSamples(int, SampleSource)); it allows to avoid intermediate arrays of samples.
+public interface SampleSource {
+    // Stores samples 0..count-1 into result[offset..offset+count-1]
+    void readSamples(double[] result, int offset, int count);
+}
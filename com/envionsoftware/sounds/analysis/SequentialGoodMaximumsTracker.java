@@ -0,0 +1,62 @@
+package com.envionsoftware.sounds.analysis;
+
+/**
+ * Counts series of sequential good local maximums (like {@link AudioAnalyser#postprocessFoundMaximums()}),
+ * when maximums are found step by step, for example, while analysing a stream interval by interval.
+ * Every maximum must be added once, in increasing order of time; O(1) operations per maximum.
+ */
+public final class SequentialGoodMaximumsTracker {
+    private long lastAbsoluteSampleIndex = -1;
+    private double lastTimeStamp = Double.NaN;
+    private int count = 1;
+    private int maxCount = 0;
+    private int totalCount = 0;
+
+    public void reset() {
+        lastAbsoluteSampleIndex = -1;
+        lastTimeStamp = Double.NaN;
+        count = 1;
+        maxCount = 0;
+        totalCount = 0;
+    }
+
+    // Absolute sample index of the last added maximum, or -1 if there were no maximums
+    public long lastAbsoluteSampleIndex() {
+        return lastAbsoluteSampleIndex;
+    }
+
+    public void addGoodMaximum(
+        long absoluteSampleIndex,
+        double timeStamp,
+        double maxDurationBetweenSequentialGoodMaximums)
+    {
+        if (absoluteSampleIndex <= lastAbsoluteSampleIndex) {
+            throw new IllegalArgumentException("Maximums must be added in increasing order: "
+                + absoluteSampleIndex + " after " + lastAbsoluteSampleIndex);
+        }
+        if (lastAbsoluteSampleIndex >= 0) {
+            double distance = timeStamp - lastTimeStamp;
+            if (distance <= maxDurationBetweenSequentialGoodMaximums) {
+                if (count == 1) {
+                    // start of the series
+                    totalCount++;
+                }
+                count++;
+                totalCount++;
+            } else {
+                count = 1;
+            }
+            maxCount = Math.max(maxCount, count);
+        }
+        lastAbsoluteSampleIndex = absoluteSampleIndex;
+        lastTimeStamp = timeStamp;
+    }
+
+    public int maxNumberOfSequentialGoodMaximums() {
+        return maxCount == 1 ? 0 : maxCount;
+    }
+
+    public int totalNumberOfSequentialGoodMaximums() {
+        return totalCount;
+    }
+}
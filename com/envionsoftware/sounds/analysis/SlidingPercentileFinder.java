@@ -0,0 +1,296 @@
+package com.envionsoftware.sounds.analysis;
+
+import java.util.Arrays;
+
+// Finds exact percentiles of ranges of some array, when these ranges move forward step by step
+// (like left and right halves of the wide aperture while analysing the sequence of local maximums).
+// Every window is a pair of indexed binary heaps: max-heap of k+1 least elements and min-heap of other elements,
+// so, moving the window boundary by 1 element requires O(log W) operations and k-th element is the top
+// of the first heap. When the window jumps too far, it is rebuilt by introselect in O(W) operations.
+// Several windows are supported: every query is served by the window, which is the nearest to the requested range.
+final class SlidingPercentileFinder {
+    private static final int NUMBER_OF_WINDOWS = 2;
+
+    private double[] values = null;
+    private int count = 0;
+    private double[] workMemory = new double[0];
+    private final Window[] windows = new Window[NUMBER_OF_WINDOWS];
+
+    SlidingPercentileFinder() {
+        for (int k = 0; k < windows.length; k++) {
+            windows[k] = new Window();
+        }
+    }
+
+    // Must be called when the array is changed
+    void reset(double[] values, int count) {
+        this.values = values;
+        this.count = count;
+        for (Window window : windows) {
+            window.from = window.to = 0;
+            window.lowerSize = window.upperSize = 0;
+        }
+    }
+
+    // Returns the same result as AnalysingTools.percentile(values, from, to - from, ..., level)
+    double percentile(int from, int to, double level) {
+        if (from < 0 || to > count || from > to) {
+            throw new IndexOutOfBoundsException("Invalid range " + from + ".." + to + " for " + count + " values");
+        }
+        if (from == to) {
+            return Double.NaN;
+        }
+        Window nearest = windows[0];
+        for (int k = 1; k < windows.length; k++) {
+            if (windows[k].distance(from, to) < nearest.distance(from, to)) {
+                nearest = windows[k];
+            }
+        }
+        nearest.moveTo(from, to, AnalysingTools.percentileIndex(to - from, level));
+        return values[nearest.lower[0]];
+    }
+
+    private final class Window {
+        private int from = 0;
+        private int to = 0;
+        private int[] lower = new int[0];
+        // - max-heap of indexes of k+1 least values
+        private int lowerSize = 0;
+        private int[] upper = new int[0];
+        // - min-heap of indexes of other values
+        private int upperSize = 0;
+        private int[] positions = new int[1];
+        private int positionMask = 0;
+        // - ring buffer of 2^k >= window length elements: for index i inside the window,
+        // positions[i & positionMask] is its position in lower heap or -1-position in upper heap
+
+        long distance(int from, int to) {
+            return (long) Math.abs(from - this.from) + (long) Math.abs(to - this.to);
+        }
+
+        void moveTo(int from, int to, int rank) {
+            final long changes = distance(from, to);
+            if (from >= this.to || to <= this.from || changes * log2(to - from) > to - from) {
+                rebuild(from, to, rank);
+                return;
+            }
+            ensurePositionsCapacity(Math.max(to, this.to) - Math.min(from, this.from));
+            // - while moving, the window can temporarily contain the union of the old and new ranges
+            if (from < this.from) {
+                for (int k = from; k < this.from; k++) {
+                    add(k);
+                }
+            } else {
+                for (int k = this.from; k < from; k++) {
+                    remove(k);
+                }
+            }
+            if (to > this.to) {
+                for (int k = this.to; k < to; k++) {
+                    add(k);
+                }
+            } else {
+                for (int k = to; k < this.to; k++) {
+                    remove(k);
+                }
+            }
+            this.from = from;
+            this.to = to;
+            while (lowerSize > rank + 1) {
+                final int index = lower[0];
+                removeLower(0);
+                pushUpper(index);
+            }
+            while (lowerSize < rank + 1) {
+                final int index = upper[0];
+                removeUpper(0);
+                pushLower(index);
+            }
+        }
+
+        private void rebuild(int from, int to, int rank) {
+            final int length = to - from;
+            ensureCapacity(length);
+            ensurePositionsCapacity(length);
+            if (workMemory.length < length) {
+                workMemory = new double[length];
+            }
+            System.arraycopy(values, from, workMemory, 0, length);
+            final double kth = AnalysingTools.select(workMemory, 0, length, rank);
+            int numberOfLess = 0;
+            for (int k = from; k < to; k++) {
+                if (values[k] < kth) {
+                    numberOfLess++;
+                }
+            }
+            int equalToLower = rank + 1 - numberOfLess;
+            lowerSize = upperSize = 0;
+            for (int k = from; k < to; k++) {
+                final double v = values[k];
+                if (v < kth || (v == kth && equalToLower-- > 0)) {
+                    lower[lowerSize++] = k;
+                } else {
+                    upper[upperSize++] = k;
+                }
+            }
+            for (int p = lowerSize / 2 - 1; p >= 0; p--) {
+                siftDownLower(p);
+            }
+            for (int p = upperSize / 2 - 1; p >= 0; p--) {
+                siftDownUpper(p);
+            }
+            for (int p = 0; p < lowerSize; p++) {
+                positions[lower[p] & positionMask] = p;
+            }
+            for (int p = 0; p < upperSize; p++) {
+                positions[upper[p] & positionMask] = -1 - p;
+            }
+            this.from = from;
+            this.to = to;
+        }
+
+        private void add(int index) {
+            ensureCapacity(lowerSize + upperSize + 1);
+            final double v = values[index];
+            if (lowerSize > 0 ? v <= values[lower[0]] : upperSize == 0 || v <= values[upper[0]]) {
+                pushLower(index);
+            } else {
+                pushUpper(index);
+            }
+        }
+
+        private void remove(int index) {
+            final int position = positions[index & positionMask];
+            if (position >= 0) {
+                removeLower(position);
+            } else {
+                removeUpper(-1 - position);
+            }
+        }
+
+        private void ensureCapacity(int length) {
+            if (lower.length < length) {
+                final int newLength = Math.max(length, Math.min(count, 2 * lower.length));
+                lower = Arrays.copyOf(lower, newLength);
+                upper = Arrays.copyOf(upper, newLength);
+            }
+        }
+
+        private void ensurePositionsCapacity(int length) {
+            if (positions.length < length) {
+                positions = new int[Integer.highestOneBit(length - 1) << 1];
+                positionMask = positions.length - 1;
+                for (int p = 0; p < lowerSize; p++) {
+                    positions[lower[p] & positionMask] = p;
+                }
+                for (int p = 0; p < upperSize; p++) {
+                    positions[upper[p] & positionMask] = -1 - p;
+                }
+            }
+        }
+
+        private void pushLower(int index) {
+            lower[lowerSize] = index;
+            positions[index & positionMask] = lowerSize;
+            siftUpLower(lowerSize++);
+        }
+
+        private void pushUpper(int index) {
+            upper[upperSize] = index;
+            positions[index & positionMask] = -1 - upperSize;
+            siftUpUpper(upperSize++);
+        }
+
+        private void removeLower(int position) {
+            final int last = lower[--lowerSize];
+            if (position < lowerSize) {
+                lower[position] = last;
+                positions[last & positionMask] = position;
+                siftDownLower(position);
+                siftUpLower(positions[last & positionMask]);
+            }
+        }
+
+        private void removeUpper(int position) {
+            final int last = upper[--upperSize];
+            if (position < upperSize) {
+                upper[position] = last;
+                positions[last & positionMask] = -1 - position;
+                siftDownUpper(position);
+                siftUpUpper(-1 - positions[last & positionMask]);
+            }
+        }
+
+        private void siftUpLower(int p) {
+            final int index = lower[p];
+            final double v = values[index];
+            while (p > 0) {
+                final int parent = (p - 1) >> 1;
+                if (values[lower[parent]] >= v) {
+                    break;
+                }
+                lower[p] = lower[parent];
+                positions[lower[p] & positionMask] = p;
+                p = parent;
+            }
+            lower[p] = index;
+            positions[index & positionMask] = p;
+        }
+
+        private void siftDownLower(int p) {
+            final int index = lower[p];
+            final double v = values[index];
+            for (int child; (child = 2 * p + 1) < lowerSize; ) {
+                if (child + 1 < lowerSize && values[lower[child + 1]] > values[lower[child]]) {
+                    child++;
+                }
+                if (values[lower[child]] <= v) {
+                    break;
+                }
+                lower[p] = lower[child];
+                positions[lower[p] & positionMask] = p;
+                p = child;
+            }
+            lower[p] = index;
+            positions[index & positionMask] = p;
+        }
+
+        private void siftUpUpper(int p) {
+            final int index = upper[p];
+            final double v = values[index];
+            while (p > 0) {
+                final int parent = (p - 1) >> 1;
+                if (values[upper[parent]] <= v) {
+                    break;
+                }
+                upper[p] = upper[parent];
+                positions[upper[p] & positionMask] = -1 - p;
+                p = parent;
+            }
+            upper[p] = index;
+            positions[index & positionMask] = -1 - p;
+        }
+
+        private void siftDownUpper(int p) {
+            final int index = upper[p];
+            final double v = values[index];
+            for (int child; (child = 2 * p + 1) < upperSize; ) {
+                if (child + 1 < upperSize && values[upper[child + 1]] < values[upper[child]]) {
+                    child++;
+                }
+                if (values[upper[child]] >= v) {
+                    break;
+                }
+                upper[p] = upper[child];
+                positions[upper[p] & positionMask] = -1 - p;
+                p = child;
+            }
+            upper[p] = index;
+            positions[index & positionMask] = -1 - p;
+        }
+    }
+
+    private static int log2(int n) {
+        return 32 - Integer.numberOfLeadingZeros(n);
+    }
+}
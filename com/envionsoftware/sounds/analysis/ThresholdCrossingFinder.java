@@ -0,0 +1,164 @@
+package com.envionsoftware.sounds.analysis;
+
+// Finds the first or the last element of a range, which is greater or less than the given threshold.
+// The array is split into blocks of 64 elements and "superblocks" of 64 blocks (4096 elements); for every
+// block and superblock we store its minimum and maximum. The search skips whole superblocks and blocks,
+// which cannot contain the required element, and checks single elements only in 2 partial blocks at the range
+// ends and in the found block: O(128 + 128 + range/4096) operations instead of O(range).
+// Elements are checked by the threshold scans of AnalysingTools (SIMD kernels, if they are available).
+// Summaries are built by update() for the parts of the array, which are ready (it allows to build them
+// together with lazy calculation of the array by segments, aligned to superblocks).
+final class ThresholdCrossingFinder {
+    private static final int BLOCK_LOG = 6;
+    private static final int BLOCK_LENGTH = 1 << BLOCK_LOG;
+    private static final int SUPERBLOCK_LOG = 2 * BLOCK_LOG;
+    static final int SUPERBLOCK_LENGTH = 1 << SUPERBLOCK_LOG;
+
+    private double[] values = null;
+    private int count = 0;
+    private double[] blockMin = new double[0];
+    private double[] blockMax = new double[0];
+    private double[] superblockMin = new double[0];
+    private double[] superblockMax = new double[0];
+
+    // Must be called when the array is changed; then update() must be called for all ranges,
+    // where the search will be performed
+    void reset(double[] values, int count) {
+        this.values = values;
+        this.count = count;
+        final int numberOfBlocks = count >> BLOCK_LOG;
+        if (blockMin.length < numberOfBlocks) {
+            blockMin = new double[numberOfBlocks];
+            blockMax = new double[numberOfBlocks];
+        }
+        final int numberOfSuperblocks = count >> SUPERBLOCK_LOG;
+        if (superblockMin.length < numberOfSuperblocks) {
+            superblockMin = new double[numberOfSuperblocks];
+            superblockMax = new double[numberOfSuperblocks];
+        }
+    }
+
+    // Builds summaries of all (full) blocks and superblocks inside values[from..to-1];
+    // from must be a multiple of SUPERBLOCK_LENGTH, to must be its multiple or count
+    void update(int from, int to) {
+        to = Math.min(to, count);
+        for (int block = from >> BLOCK_LOG, k = from; k + BLOCK_LENGTH <= to; block++) {
+            double min = values[k];
+            double max = min;
+            for (final int blockTo = k + BLOCK_LENGTH; k < blockTo; k++) {
+                final double v = values[k];
+                if (v < min) {
+                    min = v;
+                }
+                if (v > max) {
+                    max = v;
+                }
+            }
+            blockMin[block] = min;
+            blockMax[block] = max;
+        }
+        for (int superblock = from >> SUPERBLOCK_LOG, block = superblock << BLOCK_LOG;
+             (superblock + 1) << SUPERBLOCK_LOG <= to; superblock++) {
+            double min = blockMin[block];
+            double max = blockMax[block];
+            for (final int blockTo = block + BLOCK_LENGTH; block < blockTo; block++) {
+                min = Math.min(min, blockMin[block]);
+                max = Math.max(max, blockMax[block]);
+            }
+            superblockMin[superblock] = min;
+            superblockMax[superblock] = max;
+        }
+    }
+
+    // Returns the minimal k in from..to-1 with values[k] > threshold, or -1 if there is no such k
+    int firstGreater(int from, int to, double threshold) {
+        final int head = Math.min(alignUp(from), to);
+        final int result = AnalysingTools.firstGreater(values, from, head, threshold);
+        if (result >= 0) {
+            return result;
+        }
+        int k = head;
+        while (k + BLOCK_LENGTH <= to) {
+            if ((k & (SUPERBLOCK_LENGTH - 1)) == 0 && k + SUPERBLOCK_LENGTH <= to
+                && superblockMax[k >> SUPERBLOCK_LOG] <= threshold) {
+                k += SUPERBLOCK_LENGTH;
+            } else if (blockMax[k >> BLOCK_LOG] > threshold) {
+                return AnalysingTools.firstGreater(values, k, k + BLOCK_LENGTH, threshold);
+            } else {
+                k += BLOCK_LENGTH;
+            }
+        }
+        return AnalysingTools.firstGreater(values, k, to, threshold);
+    }
+
+    // Returns the maximal k in from..to-1 with values[k] > threshold, or -1 if there is no such k
+    int lastGreater(int from, int to, double threshold) {
+        final int tail = Math.max(alignDown(to), from);
+        final int result = AnalysingTools.lastGreater(values, tail, to, threshold);
+        if (result >= 0) {
+            return result;
+        }
+        int k = tail;
+        while (k - BLOCK_LENGTH >= from) {
+            if ((k & (SUPERBLOCK_LENGTH - 1)) == 0 && k - SUPERBLOCK_LENGTH >= from
+                && superblockMax[(k >> SUPERBLOCK_LOG) - 1] <= threshold) {
+                k -= SUPERBLOCK_LENGTH;
+            } else if (blockMax[(k >> BLOCK_LOG) - 1] > threshold) {
+                return AnalysingTools.lastGreater(values, k - BLOCK_LENGTH, k, threshold);
+            } else {
+                k -= BLOCK_LENGTH;
+            }
+        }
+        return AnalysingTools.lastGreater(values, from, k, threshold);
+    }
+
+    // Returns the minimal k in from..to-1 with values[k] < threshold, or -1 if there is no such k
+    int firstLess(int from, int to, double threshold) {
+        final int head = Math.min(alignUp(from), to);
+        final int result = AnalysingTools.firstLess(values, from, head, threshold);
+        if (result >= 0) {
+            return result;
+        }
+        int k = head;
+        while (k + BLOCK_LENGTH <= to) {
+            if ((k & (SUPERBLOCK_LENGTH - 1)) == 0 && k + SUPERBLOCK_LENGTH <= to
+                && superblockMin[k >> SUPERBLOCK_LOG] >= threshold) {
+                k += SUPERBLOCK_LENGTH;
+            } else if (blockMin[k >> BLOCK_LOG] < threshold) {
+                return AnalysingTools.firstLess(values, k, k + BLOCK_LENGTH, threshold);
+            } else {
+                k += BLOCK_LENGTH;
+            }
+        }
+        return AnalysingTools.firstLess(values, k, to, threshold);
+    }
+
+    // Returns the maximal k in from..to-1 with values[k] < threshold, or -1 if there is no such k
+    int lastLess(int from, int to, double threshold) {
+        final int tail = Math.max(alignDown(to), from);
+        final int result = AnalysingTools.lastLess(values, tail, to, threshold);
+        if (result >= 0) {
+            return result;
+        }
+        int k = tail;
+        while (k - BLOCK_LENGTH >= from) {
+            if ((k & (SUPERBLOCK_LENGTH - 1)) == 0 && k - SUPERBLOCK_LENGTH >= from
+                && superblockMin[(k >> SUPERBLOCK_LOG) - 1] >= threshold) {
+                k -= SUPERBLOCK_LENGTH;
+            } else if (blockMin[(k >> BLOCK_LOG) - 1] < threshold) {
+                return AnalysingTools.lastLess(values, k - BLOCK_LENGTH, k, threshold);
+            } else {
+                k -= BLOCK_LENGTH;
+            }
+        }
+        return AnalysingTools.lastLess(values, from, k, threshold);
+    }
+
+    private static int alignUp(int index) {
+        return (index + BLOCK_LENGTH - 1) & -BLOCK_LENGTH;
+    }
+
+    private static int alignDown(int index) {
+        return index & -BLOCK_LENGTH;
+    }
+}
@@ -0,0 +1,20 @@
+package com.envionsoftware.sounds.analysis;
+
+// SIMD implementations of some AnalysingTools functions with the same contracts. The only implementation,
+// VectorAnalysingTools, depends on the incubator Vector API and is compiled separately; the core classes
+// use it only through this interface (see AnalysingTools.isVectorKernelsUsed()).
+interface VectorKernels {
+    void squares(double[] result, double[] values, int count);
+
+    double maxValue(double[] values, int from, int to);
+
+    double minValue(double[] values, int from, int to);
+
+    int firstGreater(double[] values, int from, int to, double threshold);
+
+    int lastGreater(double[] values, int from, int to, double threshold);
+
+    int firstLess(double[] values, int from, int to, double threshold);
+
+    int lastLess(double[] values, int from, int to, double threshold);
+}
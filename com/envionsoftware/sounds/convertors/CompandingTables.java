@@ -0,0 +1,112 @@
+package com.envionsoftware.sounds.convertors;
+
+// Lookup tables for G.711 mu-law and A-law conversions, giving exactly the same results as the formulas
+// of SimpleAudioConversion without Math.pow/exp/log for every sample.
+// Decoding: 256-entry tables of expanded 8-bit codes.
+// Encoding: the formula rounds the compressed magnitude down to one of 128 levels, and this magnitude
+// is a non-decreasing function of |sample|, so it is defined by the thresholds: thresholds[m] is the least
+// float |sample| with magnitude m (found by binary search over float bits at initialization). The magnitude
+// table with CELLS cells for |sample| in 0..1 (14 bits with the sign, like G.711 linear PCM) contains
+// the magnitude at the beginning of every cell; thresholds are more than a cell apart, so the table value
+// is corrected by at most one comparison (identity with the formulas was checked for all floats in -1..1).
+// Samples out of -1..1 range and NaN are converted by the formulas.
+final class CompandingTables {
+    private static final int CELL_BITS = 13;
+    private static final int CELLS = 1 << CELL_BITS;
+    private static final float CELLS_PER_UNIT = CELLS;
+
+    static final float[] MU_LAW_DECODING = new float[256];
+    static final float[] A_LAW_DECODING = new float[256];
+    private static final float[] MU_LAW_THRESHOLDS;
+    private static final float[] A_LAW_THRESHOLDS;
+    private static final byte[] MU_LAW_MAGNITUDES;
+    private static final byte[] A_LAW_MAGNITUDES;
+
+    static {
+        for (int code = 0; code < 256; code++) {
+            MU_LAW_DECODING[code] = SimpleAudioConversion.bitsToMuLawByFormula(code);
+            A_LAW_DECODING[code] = SimpleAudioConversion.bitsToALawByFormula(code);
+        }
+        MU_LAW_THRESHOLDS = thresholds(false);
+        A_LAW_THRESHOLDS = thresholds(true);
+        MU_LAW_MAGNITUDES = magnitudes(MU_LAW_THRESHOLDS);
+        A_LAW_MAGNITUDES = magnitudes(A_LAW_THRESHOLDS);
+    }
+
+    private CompandingTables() {
+    }
+
+    static long muLawToBits(float sample) {
+        final float a = Math.abs(sample);
+        if (!(a <= 1.0f)) {
+            return SimpleAudioConversion.muLawToBitsByFormula(sample);
+        }
+        int m = MU_LAW_MAGNITUDES[(int) (a * CELLS_PER_UNIT)] & 0xFF;
+        if (a >= MU_LAW_THRESHOLDS[m + 1]) {
+            m++;
+        }
+        return m == 0 ? 0xffL : (m ^ signBit(sample) << 7) ^ 0xffL;
+        // - the same as -m ^ 0x80 for negative samples in the formula
+    }
+
+    static long aLawToBits(float sample) {
+        final float a = Math.abs(sample);
+        if (!(a <= 1.0f)) {
+            return SimpleAudioConversion.aLawToBitsByFormula(sample);
+        }
+        int m = A_LAW_MAGNITUDES[(int) (a * CELLS_PER_UNIT)] & 0xFF;
+        if (a >= A_LAW_THRESHOLDS[m + 1]) {
+            m++;
+        }
+        return m == 0 ? 0x55L : (m ^ signBit(sample) << 7) ^ 0x55L;
+        // - the same as -m ^ 0x80 for negative samples in the formula
+    }
+
+    private static int signBit(float sample) {
+        return Float.floatToRawIntBits(sample) >>> 31;
+    }
+
+    // Magnitude 0..128, calculated by the formula for 0.0 <= a <= 1.0
+    private static int magnitudeByFormula(boolean aLaw, float a) {
+        return aLaw ?
+            (int) (SimpleAudioConversion.aLawToBitsByFormula(a) ^ 0x55L) :
+            (int) (SimpleAudioConversion.muLawToBitsByFormula(a) ^ 0xffL);
+    }
+
+    private static float[] thresholds(boolean aLaw) {
+        final int maxBits = Float.floatToRawIntBits(1.0f);
+        // - bits of non-negative floats increase together with their values
+        final float[] result = new float[magnitudeByFormula(aLaw, 1.0f) + 2];
+        result[result.length - 1] = Float.POSITIVE_INFINITY;
+        // - the stop value after the maximal magnitude
+        for (int m = 1; m < result.length - 1; m++) {
+            int low = 0;
+            int high = maxBits;
+            // - magnitudeByFormula(low) < m <= magnitudeByFormula(high)
+            while (high - low > 1) {
+                final int middle = (low + high) >>> 1;
+                if (magnitudeByFormula(aLaw, Float.intBitsToFloat(middle)) >= m) {
+                    high = middle;
+                } else {
+                    low = middle;
+                }
+            }
+            result[m] = Float.intBitsToFloat(high);
+        }
+        return result;
+    }
+
+    private static byte[] magnitudes(float[] thresholds) {
+        final byte[] result = new byte[CELLS + 1];
+        // - the last cell is for a = 1.0
+        int m = 0;
+        for (int cell = 0; cell <= CELLS; cell++) {
+            final float a = cell / CELLS_PER_UNIT;
+            while (a >= thresholds[m + 1]) {
+                m++;
+            }
+            result[cell] = (byte) m;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,244 @@
+package com.envionsoftware.sounds.convertors;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioFormat.Encoding;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * RIFF/WAVE file, mapped into memory by {@link FileChannel#map}: the header and chunks are parsed
+ * without {@code AudioSystem}, and samples are decoded from the mapped data into the caller's array
+ * by {@link SampleCodec} block by block, without reading the whole file into memory.
+ * <p>
+ * Supported formats: PCM 8 (unsigned), 16, 24, 32 bits and IEEE float 32, 64 bits, including
+ * WAVE_FORMAT_EXTENSIBLE with these subformats. Data chunks longer than 2 GB are mapped by several buffers.
+ */
+public final class MappedWavFile implements Closeable {
+    private static final int WAVE_FORMAT_PCM = 1;
+    private static final int WAVE_FORMAT_IEEE_FLOAT = 3;
+    private static final int WAVE_FORMAT_EXTENSIBLE = 0xFFFE;
+    private static final int MAX_HEADER_CHUNK_SIZE = 1 << 20;
+    // - fmt chunk and other chunks before data are read into memory only if they are not longer than this
+    private static final int FRAMES_PER_BLOCK = 4096;
+    // - decodeChannel copies the mapped data into a byte array of this number of frames for SampleCodec
+
+    private final FileChannel channel;
+    private final AudioFormat format;
+    private final SampleCodec codec;
+    private final int bytesPerSample;
+    private final int frameSize;
+    private final long dataOffset;
+    private final long numberOfFrames;
+    private final int framesPerBuffer;
+    private final MappedByteBuffer[] buffers;
+    // - buffers[k] maps frames k*framesPerBuffer..(k+1)*framesPerBuffer-1 of the data chunk
+
+    private MappedWavFile(FileChannel channel) throws IOException, UnsupportedAudioFileException {
+        this.channel = channel;
+        final long fileSize = channel.size();
+        final ByteBuffer header = read(channel, 0, 12);
+        if (header.getInt(0) != fourCC("RIFF") || header.getInt(8) != fourCC("WAVE")) {
+            throw new UnsupportedAudioFileException("Not a RIFF/WAVE file");
+        }
+        ByteBuffer fmt = null;
+        long position = 12;
+        long dataSize = -1;
+        while (position + 8 <= fileSize) {
+            final ByteBuffer chunkHeader = read(channel, position, 8);
+            final int id = chunkHeader.getInt(0);
+            final long size = chunkHeader.getInt(4) & 0xFFFFFFFFL;
+            position += 8;
+            if (id == fourCC("data")) {
+                dataSize = size == 0 ? fileSize - position : Math.min(size, fileSize - position);
+                // - some writers leave the size 0 or 0xFFFFFFFF in unfinished files
+                break;
+            }
+            if (id == fourCC("fmt ")) {
+                if (size < 16 || size > MAX_HEADER_CHUNK_SIZE) {
+                    throw new UnsupportedAudioFileException("Invalid fmt chunk size " + size);
+                }
+                fmt = read(channel, position, (int) size);
+            }
+            position += size + (size & 1);
+            // - chunks are aligned to 2 bytes
+        }
+        if (fmt == null) {
+            throw new UnsupportedAudioFileException("No fmt chunk before data chunk");
+        }
+        if (dataSize < 0) {
+            throw new UnsupportedAudioFileException("No data chunk");
+        }
+        int formatTag = fmt.getShort(0) & 0xFFFF;
+        final int numberOfChannels = fmt.getShort(2) & 0xFFFF;
+        final long sampleRate = fmt.getInt(4) & 0xFFFFFFFFL;
+        final int blockAlign = fmt.getShort(12) & 0xFFFF;
+        final int bitsPerSample = fmt.getShort(14) & 0xFFFF;
+        if (formatTag == WAVE_FORMAT_EXTENSIBLE) {
+            if (fmt.limit() < 40) {
+                throw new UnsupportedAudioFileException("Too short fmt chunk of WAVE_FORMAT_EXTENSIBLE");
+            }
+            formatTag = fmt.getShort(24) & 0xFFFF;
+            // - the first 2 bytes of the subformat GUID
+        }
+        final boolean floatingPoint = formatTag == WAVE_FORMAT_IEEE_FLOAT;
+        if (formatTag == WAVE_FORMAT_PCM) {
+            if (bitsPerSample != 8 && bitsPerSample != 16 && bitsPerSample != 24 && bitsPerSample != 32) {
+                throw new UnsupportedAudioFileException("Unsupported PCM sample size " + bitsPerSample);
+            }
+        } else if (formatTag == WAVE_FORMAT_IEEE_FLOAT) {
+            if (bitsPerSample != 32 && bitsPerSample != 64) {
+                throw new UnsupportedAudioFileException("Unsupported floating-point sample size " + bitsPerSample);
+            }
+        } else {
+            throw new UnsupportedAudioFileException("Unsupported WAVE format tag " + formatTag);
+        }
+        this.bytesPerSample = bitsPerSample / 8;
+        if (numberOfChannels == 0 || sampleRate == 0 || blockAlign < numberOfChannels * bytesPerSample) {
+            throw new UnsupportedAudioFileException("Invalid fmt chunk: " + numberOfChannels + " channels, "
+                + sampleRate + " Hz, block align " + blockAlign);
+        }
+        this.frameSize = blockAlign;
+        this.format = new AudioFormat(
+            floatingPoint ? Encoding.PCM_FLOAT : bitsPerSample == 8 ? Encoding.PCM_UNSIGNED : Encoding.PCM_SIGNED,
+            sampleRate, bitsPerSample, numberOfChannels, frameSize, sampleRate, false);
+        this.codec = SampleCodec.forFormat(format);
+        this.dataOffset = position;
+        this.numberOfFrames = dataSize / frameSize;
+        this.framesPerBuffer = Integer.MAX_VALUE / frameSize;
+        final int numberOfBuffers = (int) ((numberOfFrames + framesPerBuffer - 1) / framesPerBuffer);
+        this.buffers = new MappedByteBuffer[numberOfBuffers];
+        for (int k = 0; k < numberOfBuffers; k++) {
+            final long fromFrame = (long) k * framesPerBuffer;
+            final long length = Math.min(framesPerBuffer, numberOfFrames - fromFrame) * frameSize;
+            buffers[k] = channel.map(FileChannel.MapMode.READ_ONLY, dataOffset + fromFrame * frameSize, length);
+            buffers[k].order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    // Throws UnsupportedAudioFileException if it is not a RIFF/WAVE file or its format is not supported
+    public static MappedWavFile open(Path path) throws IOException, UnsupportedAudioFileException {
+        final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new MappedWavFile(channel);
+        } catch (IOException | UnsupportedAudioFileException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public AudioFormat getFormat() {
+        return format;
+    }
+
+    public int getNumberOfChannels() {
+        return format.getChannels();
+    }
+
+    public double getFrameRate() {
+        return format.getFrameRate();
+    }
+
+    public long getNumberOfFrames() {
+        return numberOfFrames;
+    }
+
+    // Position of the sample data in the file
+    public long getDataOffset() {
+        return dataOffset;
+    }
+
+    // Read-only little-endian view of the data of frames fromFrame..fromFrame+numberOfFrames-1
+    // (interleaved samples, as stored in the file); usually it is a part of the mapped buffer without copying
+    public ByteBuffer data(long fromFrame, int numberOfFrames) throws IOException {
+        checkFrames(fromFrame, numberOfFrames);
+        if ((long) numberOfFrames * frameSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many frames for one buffer: " + numberOfFrames);
+        }
+        final int k = (int) (fromFrame / framesPerBuffer);
+        final int frameInBuffer = (int) (fromFrame - (long) k * framesPerBuffer);
+        final ByteBuffer result;
+        if (numberOfFrames == 0) {
+            result = ByteBuffer.allocate(0);
+        } else if (frameInBuffer + numberOfFrames <= framesPerBuffer) {
+            final ByteBuffer duplicate = buffers[k].duplicate();
+            duplicate.position(frameInBuffer * frameSize);
+            duplicate.limit(duplicate.position() + numberOfFrames * frameSize);
+            result = duplicate.slice();
+        } else {
+            // - the range crosses the boundary of mapped buffers
+            result = channel.map(FileChannel.MapMode.READ_ONLY, dataOffset + fromFrame * frameSize,
+                (long) numberOfFrames * frameSize);
+        }
+        return result.asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    // Decodes samples of the given channel from frames fromFrame..fromFrame+count-1 into
+    // result[offset..offset+count-1] by SampleCodec.decode(double[]) for the file format: samples are normalized
+    // (integer PCM to -1.0..1.0 range, 8-bit unsigned samples are shifted to signed ones; floating-point samples
+    // are stored as is) and multiplied by the scale; SampleCodec.INT16_SCALE gives units of 16-bit PCM
+    // for any sample size, like the analysis thresholds expect.
+    public void decodeChannel(int channel, long fromFrame, double[] result, int offset, int count, double scale) {
+        if (channel < 0 || channel >= format.getChannels()) {
+            throw new IndexOutOfBoundsException("Invalid channel " + channel
+                + " (number of channels is " + format.getChannels() + ")");
+        }
+        if (offset < 0 || count < 0 || offset + count > result.length) {
+            throw new IndexOutOfBoundsException("Invalid offset=" + offset + " or count=" + count +
+                " for array double[" + result.length + "]");
+        }
+        checkFrames(fromFrame, count);
+        final byte[] block = new byte[Math.min(count, FRAMES_PER_BLOCK) * frameSize];
+        // - local: several threads can decode different channels at the same time
+        while (count > 0) {
+            final int k = (int) (fromFrame / framesPerBuffer);
+            final int frameInBuffer = (int) (fromFrame - (long) k * framesPerBuffer);
+            final int n = Math.min(count, framesPerBuffer - frameInBuffer);
+            final ByteBuffer data = buffers[k].duplicate();
+            data.position(frameInBuffer * frameSize);
+            for (int from = 0; from < n; from += FRAMES_PER_BLOCK) {
+                final int m = Math.min(FRAMES_PER_BLOCK, n - from);
+                data.get(block, 0, m * frameSize);
+                codec.decode(block, channel * bytesPerSample, frameSize, result, offset + from, m, scale);
+            }
+            fromFrame += n;
+            offset += n;
+            count -= n;
+        }
+    }
+
+    // Closes the file; the mapped memory is released when the buffers are garbage collected
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void checkFrames(long fromFrame, long count) {
+        if (fromFrame < 0 || count < 0 || fromFrame + count > numberOfFrames) {
+            throw new IndexOutOfBoundsException("Invalid frames " + fromFrame + ".." + (fromFrame + count - 1)
+                + " for " + numberOfFrames + " frames");
+        }
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        final ByteBuffer result = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (result.hasRemaining()) {
+            if (channel.read(result, position + result.position()) < 0) {
+                throw new EOFException("Unexpected end of file at position " + (position + result.position()));
+            }
+        }
+        result.flip();
+        return result;
+    }
+
+    private static int fourCC(String id) {
+        return id.charAt(0) | id.charAt(1) << 8 | id.charAt(2) << 16 | id.charAt(3) << 24;
+    }
+}
@@ -0,0 +1,738 @@
+package com.envionsoftware.sounds.convertors;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioFormat.Encoding;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Decoder and encoder of audio samples of one {@link AudioFormat}, specialised for the format: it is selected
+ * once by {@link #forFormat(AudioFormat)}, and then whole blocks of samples are converted by tight loops
+ * without checking the encoding and the sample size for every sample. 16-, 32- and 64-bit samples are
+ * accessed by little- or big-endian {@link VarHandle} views of the byte array.
+ * <p>
+ * Samples are converted exactly like in {@link SimpleAudioConversion}: integer PCM samples are scaled to
+ * -1.0..1.0 range, mu-law and A-law samples are expanded. Samples are read from (or written to) the byte array
+ * with any step, not less than the size of a sample, so a single channel can be converted directly
+ * from (or to) interleaved frames.
+ * <p>
+ * Samples can be also decoded into {@code double[]} with the given scale (for example, {@link #INT16_SCALE}
+ * for units of 16-bit PCM, used by the analysers) and into {@code short[]} as 16-bit PCM.
+ * {@code decodeChannels} methods decode several selected channels of interleaved frames in one pass,
+ * skipping other channels.
+ */
+public abstract class SampleCodec {
+    private static final VarHandle SHORT_LE = MethodHandles.byteArrayViewVarHandle(
+        short[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle SHORT_BE = MethodHandles.byteArrayViewVarHandle(
+        short[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle INT_LE = MethodHandles.byteArrayViewVarHandle(
+        int[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle INT_BE = MethodHandles.byteArrayViewVarHandle(
+        int[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle FLOAT_LE = MethodHandles.byteArrayViewVarHandle(
+        float[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle FLOAT_BE = MethodHandles.byteArrayViewVarHandle(
+        float[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle DOUBLE_LE = MethodHandles.byteArrayViewVarHandle(
+        double[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle DOUBLE_BE = MethodHandles.byteArrayViewVarHandle(
+        double[].class, ByteOrder.BIG_ENDIAN);
+
+    // Scale of double samples in units of 16-bit PCM: 16-bit samples are decoded without changes
+    public static final double INT16_SCALE = 32768.0;
+
+    private static final int FRAMES_PER_BLOCK = 4096;
+    // - decodeChannels() decodes all channels of a block of frames before the next block,
+    // so every byte is loaded from memory once
+    private static final int SHORT_BUFFER_LENGTH = 1024;
+
+    private static final float FULL_SCALE_8 = 0x1p7f;
+    private static final float FULL_SCALE_16 = 0x1p15f;
+    private static final float FULL_SCALE_24 = 0x1p23f;
+    private static final float FULL_SCALE_32 = 0x1p31f;
+    private static final float SCALE_8 = 0x1p-7f;
+    private static final float SCALE_16 = 0x1p-15f;
+    private static final float SCALE_24 = 0x1p-23f;
+    private static final float SCALE_32 = 0x1p-31f;
+    // - multiplying by powers of two is exact, so float arithmetic gives the same results as
+    // (float) (value / fullScale) and (long) (sample * fullScale) in double arithmetic of SimpleAudioConversion
+
+    final AudioFormat format;
+    final int bitsPerSample;
+    final int bytesPerSample;
+    final boolean bigEndian;
+    final int numberOfChannels;
+    final int frameSize;
+
+    private SampleCodec(AudioFormat format) {
+        this.format = format;
+        this.bitsPerSample = format.getSampleSizeInBits();
+        this.bytesPerSample = SimpleAudioConversion.bytesPerSample(bitsPerSample);
+        this.bigEndian = format.isBigEndian();
+        this.numberOfChannels = Math.max(format.getChannels(), 1);
+        this.frameSize = format.getFrameSize() > 0 ? format.getFrameSize() : numberOfChannels * bytesPerSample;
+        // - AudioSystem.NOT_SPECIFIED is -1
+    }
+
+    // Returns the codec, specialised for the given format, or generic codec (converting every sample
+    // like the generic algorithm of SimpleAudioConversion) for other formats
+    public static SampleCodec forFormat(AudioFormat format) {
+        if (format == null) {
+            throw new NullPointerException("Null audio format");
+        }
+        final Encoding encoding = format.getEncoding();
+        final int bitsPerSample = format.getSampleSizeInBits();
+        if (Encoding.PCM_SIGNED.equals(encoding)) {
+            switch (bitsPerSample) {
+                case 8:
+                    return new Pcm8Signed(format);
+                case 16:
+                    return new Pcm16(format);
+                case 24:
+                    return new Pcm24(format);
+                case 32:
+                    return new Pcm32(format);
+            }
+        } else if (Encoding.PCM_UNSIGNED.equals(encoding)) {
+            if (bitsPerSample == 8) {
+                return new Pcm8Unsigned(format);
+            }
+        } else if (Encoding.PCM_FLOAT.equals(encoding)) {
+            switch (bitsPerSample) {
+                case 32:
+                    return new Float32(format);
+                case 64:
+                    return new Float64(format);
+            }
+        } else if (Encoding.ULAW.equals(encoding)) {
+            if (bitsPerSample == 8) {
+                return new MuLaw(format);
+            }
+        } else if (Encoding.ALAW.equals(encoding)) {
+            if (bitsPerSample == 8) {
+                return new ALaw(format);
+            }
+        }
+        return generic(format);
+    }
+
+    // Returns the codec, converting samples one by one by the generic algorithm for any sample size
+    // (like SimpleAudioConversion before specialised codecs); useful for rare formats and for checking
+    public static SampleCodec generic(AudioFormat format) {
+        if (format == null) {
+            throw new NullPointerException("Null audio format");
+        }
+        return new Generic(format);
+    }
+
+    public AudioFormat getFormat() {
+        return format;
+    }
+
+    public int bytesPerSample() {
+        return bytesPerSample;
+    }
+
+    public int numberOfChannels() {
+        return numberOfChannels;
+    }
+
+    public int frameSize() {
+        return frameSize;
+    }
+
+    // Decodes count samples, the k-th of them starting at bytes[byteOffset + k * byteStep],
+    // into samples[offset..offset+count-1]
+    public final void decode(byte[] bytes, int byteOffset, int byteStep, float[] samples, int offset, int count) {
+        checkBytes(bytes, byteOffset, byteStep, count);
+        checkSamples(samples.length, offset, count, "float");
+        decodeBlock(bytes, byteOffset, byteStep, samples, offset, count);
+    }
+
+    // Encodes samples[offset..offset+count-1]; the k-th sample is stored starting at
+    // bytes[byteOffset + k * byteStep]; bytes between stored samples are not changed
+    public final void encode(float[] samples, int offset, int count, byte[] bytes, int byteOffset, int byteStep) {
+        checkSamples(samples.length, offset, count, "float");
+        checkBytes(bytes, byteOffset, byteStep, count);
+        encodeBlock(samples, offset, count, bytes, byteOffset, byteStep);
+    }
+
+    // Decodes like decode(float[]) into 16-bit PCM: 8- and 16-bit PCM samples are exact, other samples
+    // are scaled by INT16_SCALE and rounded to the nearest, with saturation to -32768..32767
+    public final void decode(byte[] bytes, int byteOffset, int byteStep, short[] samples, int offset, int count) {
+        checkBytes(bytes, byteOffset, byteStep, count);
+        checkSamples(samples.length, offset, count, "short");
+        decodeBlock(bytes, byteOffset, byteStep, samples, offset, count);
+    }
+
+    // Decodes like decode(float[]), but in double precision, multiplied by the scale
+    // (1.0 gives -1.0..1.0 range for integer PCM samples, INT16_SCALE gives units of 16-bit PCM)
+    public final void decode(
+        byte[] bytes,
+        int byteOffset,
+        int byteStep,
+        double[] samples,
+        int offset,
+        int count,
+        double scale)
+    {
+        checkBytes(bytes, byteOffset, byteStep, count);
+        checkSamples(samples.length, offset, count, "double");
+        decodeBlock(bytes, byteOffset, byteStep, samples, offset, count, scale);
+    }
+
+    // Decodes numberOfFrames interleaved frames, starting at bytes[byteOffset]: samples of channel channels[k]
+    // are stored into results[k][offset..offset+numberOfFrames-1]; other channels are skipped
+    public final void decodeChannels(
+        byte[] bytes,
+        int byteOffset,
+        int numberOfFrames,
+        int[] channels,
+        float[][] results,
+        int offset)
+    {
+        checkChannels(bytes, byteOffset, numberOfFrames, channels, results.length);
+        for (int k = 0; k < channels.length; k++) {
+            checkSamples(results[k].length, offset, numberOfFrames, "float");
+        }
+        for (int from = 0; from < numberOfFrames; from += FRAMES_PER_BLOCK) {
+            final int n = Math.min(FRAMES_PER_BLOCK, numberOfFrames - from);
+            final int p = byteOffset + from * frameSize;
+            for (int k = 0; k < channels.length; k++) {
+                decodeBlock(bytes, p + channels[k] * bytesPerSample, frameSize, results[k], offset + from, n);
+            }
+        }
+    }
+
+    // Like decodeChannels(float[][]), but into 16-bit PCM samples (see decode(short[]))
+    public final void decodeChannels(
+        byte[] bytes,
+        int byteOffset,
+        int numberOfFrames,
+        int[] channels,
+        short[][] results,
+        int offset)
+    {
+        checkChannels(bytes, byteOffset, numberOfFrames, channels, results.length);
+        for (int k = 0; k < channels.length; k++) {
+            checkSamples(results[k].length, offset, numberOfFrames, "short");
+        }
+        for (int from = 0; from < numberOfFrames; from += FRAMES_PER_BLOCK) {
+            final int n = Math.min(FRAMES_PER_BLOCK, numberOfFrames - from);
+            final int p = byteOffset + from * frameSize;
+            for (int k = 0; k < channels.length; k++) {
+                decodeBlock(bytes, p + channels[k] * bytesPerSample, frameSize, results[k], offset + from, n);
+            }
+        }
+    }
+
+    // Like decodeChannels(float[][]), but in double precision, multiplied by the scale (see decode(double[]))
+    public final void decodeChannels(
+        byte[] bytes,
+        int byteOffset,
+        int numberOfFrames,
+        int[] channels,
+        double[][] results,
+        int offset,
+        double scale)
+    {
+        checkChannels(bytes, byteOffset, numberOfFrames, channels, results.length);
+        for (int k = 0; k < channels.length; k++) {
+            checkSamples(results[k].length, offset, numberOfFrames, "double");
+        }
+        for (int from = 0; from < numberOfFrames; from += FRAMES_PER_BLOCK) {
+            final int n = Math.min(FRAMES_PER_BLOCK, numberOfFrames - from);
+            final int p = byteOffset + from * frameSize;
+            for (int k = 0; k < channels.length; k++) {
+                decodeBlock(bytes, p + channels[k] * bytesPerSample, frameSize, results[k], offset + from, n,
+                    scale);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + " codec for " + format;
+    }
+
+    abstract void decodeBlock(byte[] bytes, int p, int step, float[] samples, int offset, int count);
+
+    abstract void decodeBlock(byte[] bytes, int p, int step, double[] samples, int offset, int count, double scale);
+
+    abstract void encodeBlock(float[] samples, int offset, int count, byte[] bytes, int p, int step);
+
+    // Default implementation: scaled double samples, rounded with saturation
+    void decodeBlock(byte[] bytes, int p, int step, short[] samples, int offset, int count) {
+        final double[] buffer = new double[Math.min(count, SHORT_BUFFER_LENGTH)];
+        for (int k = offset, to = offset + count; k < to; ) {
+            final int n = Math.min(buffer.length, to - k);
+            decodeBlock(bytes, p, step, buffer, 0, n, INT16_SCALE);
+            for (int i = 0; i < n; i++, k++) {
+                samples[k] = (short) Math.rint(Math.max(-32768.0, Math.min(32767.0, buffer[i])));
+                // - NaN is converted to 0
+            }
+            p += n * step;
+        }
+    }
+
+    void checkBytes(byte[] bytes, int byteOffset, int byteStep, int count) {
+        if (byteStep < bytesPerSample) {
+            throw new IllegalArgumentException("Byte step " + byteStep
+                + " is less than the sample size " + bytesPerSample);
+        }
+        if (byteOffset < 0 || count < 0
+            || count > 0 && byteOffset + (long) (count - 1) * byteStep + bytesPerSample > bytes.length)
+        {
+            throw new ArrayIndexOutOfBoundsException("Invalid byte offset=" + byteOffset + ", step=" + byteStep
+                + " or count=" + count + " for array byte[" + bytes.length + "]");
+        }
+    }
+
+    void checkChannels(byte[] bytes, int byteOffset, int numberOfFrames, int[] channels, int numberOfResults) {
+        if (channels.length != numberOfResults) {
+            throw new IllegalArgumentException("Number of channels " + channels.length
+                + " does not match the number of result arrays " + numberOfResults);
+        }
+        for (int channel : channels) {
+            if (channel < 0 || channel >= numberOfChannels) {
+                throw new IndexOutOfBoundsException("Invalid channel " + channel
+                    + " (number of channels is " + numberOfChannels + ")");
+            }
+            checkBytes(bytes, byteOffset + channel * bytesPerSample, frameSize, numberOfFrames);
+        }
+    }
+
+    static void checkSamples(int length, int offset, int count, String elementType) {
+        if (offset < 0 || count < 0 || offset > length - count) {
+            throw new ArrayIndexOutOfBoundsException("Invalid offset=" + offset + " or count=" + count
+                + " for array " + elementType + "[" + length + "]");
+        }
+    }
+
+    private static final class Pcm8Signed extends SampleCodec {
+        private Pcm8Signed(AudioFormat format) {
+            super(format);
+        }
+
+        @Override
+        void decodeBlock(byte[] bytes, int p, int step, float[] samples, int offset, int count) {
+            for (int k = offset, to = offset + count; k < to; k++, p += step) {
+                samples[k] = bytes[p] * SCALE_8;
+            }
+        }
+
+        @Override
+        void decodeBlock(byte[] bytes, int p, int step, double[] samples, int offset, int count, double scale) {
+            final double factor = scale * SCALE_8;
+            for (int k = offset, to = offset + count; k < to; k++, p += step) {
+                samples[k] = bytes[p] * factor;
+            }
+        }
+
+        @Override
+        void decodeBlock(byte[] bytes, int p, int step, short[] samples, int offset, int count) {
+            for (int k = offset, to = offset + count; k < to; k++, p += step) {
+                samples[k] = (short) (bytes[p] << 8);
+            }
+        }
+
+        @Override
+        void encodeBlock(float[] samples, int offset, int count, byte[] bytes, int p, int step) {
+            for (int k = offset, to = offset + count; k < to; k++, p += step) {
+                bytes[p] = (byte) (long) (samples[k] * FULL_SCALE_8);
+            }
+        }
+    }
+
+    private static final class Pcm8Unsigned extends SampleCodec {
+        private Pcm8Unsigned(AudioFormat format) {
+            super(format);
+        }
+
+        @Override
+        void decodeBlock(byte[] bytes, int p, int step, float[] samples, int offset, int count) {
+            for (int k = offset, to = offset + count; k < to; k++, p += step) {
+                samples[k] = ((bytes[p] & 0xFF) - 128) * SCALE_8;
+            }
+        }
+
+        @Override
+        void decodeBlock(byte[] bytes, int p, int step, double[] samples, int offset, int count, double scale) {
+            final double factor = scale * SCALE_8;
+            for (int k = offset, to = offset + count; k < to; k++, p += step) {
+                samples[k] = ((bytes[p] & 0xFF) - 128) * factor;
+            }
+        }
+
+        @Override
+        void decodeBlock(byte[] bytes, int p, int step, short[] samples, int offset, int count) {
+            for (int k = offset, to = offset + count; k < to; k++, p += step) {
+                samples[k] = (short) (((bytes[p] & 0xFF) - 128) << 8);
+            }
+        }
+
+        @Override
+        void encodeBlock(float[] samples, int offset, int count, byte[] bytes, int p, int step) {
+            for (int k = offset, to = offset + count; k < to; k++, p += step) {
+                bytes[p] = (byte) ((long) (samples[k] * FULL_SCALE_8) + 128);
+            }
+        }
+    }
+
+    private static final class Pcm16 extends SampleCodec {
+        private Pcm16(AudioFormat format) {
+            super(format);
+        }
+
+        @Override
+        void decodeBlock(byte[] bytes, int p, int step, float[] samples, int offset, int count) {
+            final int to = offset + count;
+            if (bigEndian) {
+                for (int k = offset; k < to; k++, p += step) {
+                    samples[k] = (short) SHORT_BE.get(bytes, p) * SCALE_16;
+                }
+            } else {
+                for (int k = offset; k < to; k++, p += step) {
+                    samples[k] = (short) SHORT_LE.get(bytes, p) * SCALE_16;
+                }
+            }
+        }
+
+        @Override
+        void decodeBlock(byte[] bytes, int p, int step, double[] samples, int offset, int count, double scale) {
+            final double factor = scale * SCALE_16;
+            final int to = offset + count;
+            if (bigEndian) {
+                for (int k = offset; k < to; k++, p += step) {
+                    samples[k] = (short) SHORT_BE.get(bytes, p) * factor;
+                }
+            } else {
+                for (int k = offset; k < to; k++, p += step) {
+                    samples[k] = (short) SHORT_LE.get(bytes, p) * factor;
+                }
+            }
+        }
+
+        @Override
+        void decodeBlock(byte[] bytes, int p, int step, short[] samples, int offset, int count) {
+            final int to = offset + count;
+            if (bigEndian) {
+                for (int k = offset; k < to; k++, p += step) {
+                    samples[k] = (short) SHORT_BE.get(bytes, p);
+                }
+            } else {
+                for (int k = offset; k < to; k++, p += step) {
+                    samples[k] = (short) SHORT_LE.get(bytes, p);
+                }
+            }
+        }
+
+        @Override
+        void encodeBlock(float[] samples, int offset, int count, byte[] bytes, int p, int step) {
+            final int to = offset + count;
+            if (bigEndian) {
+                for (int k = offset; k < to; k++, p += step) {
+                    SHORT_BE.set(bytes, p, (short) (long) (samples[k] * FULL_SCALE_16));
+                }
+            } else {
+                for (int k = offset; k < to; k++, p += step) {
+                    SHORT_LE.set(bytes, p, (short) (long) (samples[k] * FULL_SCALE_16));
+                }
+            }
+        }
+    }
+
+    // 3-byte samples have no VarHandle view
+    private static final class Pcm24 extends SampleCodec {
+        private Pcm24(AudioFormat format) {
+            super(format);
+        }
+
+        @Override
+        void decodeBlock(byte[] bytes, int p, int step, float[] samples, int offset, int count) {
+            final int to = offset + count;
+            if (bigEndian) {
+                for (int k = offset; k < to; k++, p += step) {
+                    final int value = bytes[p] << 16 | (bytes[p + 1] & 0xFF) << 8 | (bytes[p + 2] & 0xFF);
+                    samples[k] = value * SCALE_24;
+                }
+            } else {
+                for (int k = offset; k < to; k++, p += step) {
+                    final int value = (bytes[p] & 0xFF) | (bytes[p + 1] & 0xFF) << 8 | bytes[p + 2] << 16;
+                    samples[k] = value * SCALE_24;
+                }
+            }
+        }
+
+        @Override
+        void decodeBlock(byte[] bytes, int p, int step, double[] samples, int offset, int count, double scale) {
+            final double factor = scale * SCALE_24;
+            final int to = offset + count;
+            if (bigEndian) {
+                for (int k = offset; k < to; k++, p += step) {
+                    samples[k] = (bytes[p] << 16 | (bytes[p + 1] & 0xFF) << 8 | (bytes[p + 2] & 0xFF)) * factor;
+                }
+            } else {
+                for (int k = offset; k < to; k++, p += step) {
+                    samples[k] = ((bytes[p] & 0xFF) | (bytes[p + 1] & 0xFF) << 8 | bytes[p + 2] << 16) * factor;
+                }
+            }
+        }
+
+        @Override
+        void encodeBlock(float[] samples, int offset, int count, byte[] bytes, int p, int step) {
+            final int to = offset + count;
+            if (bigEndian) {
+                for (int k = offset; k < to; k++, p += step) {
+                    final int value = (int) (long) (samples[k] * FULL_SCALE_24);
+                    bytes[p] = (byte) (value >>> 16);
+                    bytes[p + 1] = (byte) (value >>> 8);
+                    bytes[p + 2] = (byte) value;
+                }
+            } else {
+                for (int k = offset; k < to; k++, p += step) {
+                    final int value = (int) (long) (samples[k] * FULL_SCALE_24);
+                    bytes[p] = (byte) value;
+                    bytes[p + 1] = (byte) (value >>> 8);
+                    bytes[p + 2] = (byte) (value >>> 16);
+                }
+            }
+        }
+    }
+
+    private static final class Pcm32 extends SampleCodec {
+        private Pcm32(AudioFormat format) {
+            super(format);
+        }
+
+        @Override
+        void decodeBlock(byte[] bytes, int p, int step, float[] samples, int offset, int count) {
+            final int to = offset + count;
+            if (bigEndian) {
+                for (int k = offset; k < to; k++, p += step) {
+                    samples[k] = (int) INT_BE.get(bytes, p) * SCALE_32;
+                }
+            } else {
+                for (int k = offset; k < to; k++, p += step) {
+                    samples[k] = (int) INT_LE.get(bytes, p) * SCALE_32;
+                }
+            }
+        }
+
+        @Override
+        void decodeBlock(byte[] bytes, int p, int step, double[] samples, int offset, int count, double scale) {
+            final double factor = scale * SCALE_32;
+            final int to = offset + count;
+            if (bigEndian) {
+                for (int k = offset; k < to; k++, p += step) {
+                    samples[k] = (int) INT_BE.get(bytes, p) * factor;
+                }
+            } else {
+                for (int k = offset; k < to; k++, p += step) {
+                    samples[k] = (int) INT_LE.get(bytes, p) * factor;
+                }
+            }
+        }
+
+        @Override
+        void encodeBlock(float[] samples, int offset, int count, byte[] bytes, int p, int step) {
+            final int to = offset + count;
+            if (bigEndian) {
+                for (int k = offset; k < to; k++, p += step) {
+                    INT_BE.set(bytes, p, (int) (long) (samples[k] * FULL_SCALE_32));
+                }
+            } else {
+                for (int k = offset; k < to; k++, p += step) {
+                    INT_LE.set(bytes, p, (int) (long) (samples[k] * FULL_SCALE_32));
+                }
+            }
+        }
+    }
+
+    private static final class Float32 extends SampleCodec {
+        private Float32(AudioFormat format) {
+            super(format);
+        }
+
+        @Override
+        void decodeBlock(byte[] bytes, int p, int step, float[] samples, int offset, int count) {
+            final int to = offset + count;
+            if (bigEndian) {
+                for (int k = offset; k < to; k++, p += step) {
+                    samples[k] = (float) FLOAT_BE.get(bytes, p);
+                }
+            } else {
+                for (int k = offset; k < to; k++, p += step) {
+                    samples[k] = (float) FLOAT_LE.get(bytes, p);
+                }
+            }
+        }
+
+        @Override
+        void decodeBlock(byte[] bytes, int p, int step, double[] samples, int offset, int count, double scale) {
+            final int to = offset + count;
+            if (bigEndian) {
+                for (int k = offset; k < to; k++, p += step) {
+                    samples[k] = (float) FLOAT_BE.get(bytes, p) * scale;
+                }
+            } else {
+                for (int k = offset; k < to; k++, p += step) {
+                    samples[k] = (float) FLOAT_LE.get(bytes, p) * scale;
+                }
+            }
+        }
+
+        @Override
+        void encodeBlock(float[] samples, int offset, int count, byte[] bytes, int p, int step) {
+            final int to = offset + count;
+            if (bigEndian) {
+                for (int k = offset; k < to; k++, p += step) {
+                    FLOAT_BE.set(bytes, p, samples[k]);
+                }
+            } else {
+                for (int k = offset; k < to; k++, p += step) {
+                    FLOAT_LE.set(bytes, p, samples[k]);
+                }
+            }
+        }
+    }
+
+    private static final class Float64 extends SampleCodec {
+        private Float64(AudioFormat format) {
+            super(format);
+        }
+
+        @Override
+        void decodeBlock(byte[] bytes, int p, int step, float[] samples, int offset, int count) {
+            final int to = offset + count;
+            if (bigEndian) {
+                for (int k = offset; k < to; k++, p += step) {
+                    samples[k] = (float) (double) DOUBLE_BE.get(bytes, p);
+                }
+            } else {
+                for (int k = offset; k < to; k++, p += step) {
+                    samples[k] = (float) (double) DOUBLE_LE.get(bytes, p);
+                }
+            }
+        }
+
+        @Override
+        void decodeBlock(byte[] bytes, int p, int step, double[] samples, int offset, int count, double scale) {
+            final int to = offset + count;
+            if (bigEndian) {
+                for (int k = offset; k < to; k++, p += step) {
+                    samples[k] = (double) DOUBLE_BE.get(bytes, p) * scale;
+                }
+            } else {
+                for (int k = offset; k < to; k++, p += step) {
+                    samples[k] = (double) DOUBLE_LE.get(bytes, p) * scale;
+                }
+            }
+        }
+
+        @Override
+        void encodeBlock(float[] samples, int offset, int count, byte[] bytes, int p, int step) {
+            final int to = offset + count;
+            if (bigEndian) {
+                for (int k = offset; k < to; k++, p += step) {
+                    DOUBLE_BE.set(bytes, p, (double) samples[k]);
+                }
+            } else {
+                for (int k = offset; k < to; k++, p += step) {
+                    DOUBLE_LE.set(bytes, p, (double) samples[k]);
+                }
+            }
+        }
+    }
+
+    private static final class MuLaw extends SampleCodec {
+        private MuLaw(AudioFormat format) {
+            super(format);
+        }
+
+        @Override
+        void decodeBlock(byte[] bytes, int p, int step, float[] samples, int offset, int count) {
+            for (int k = offset, to = offset + count; k < to; k++, p += step) {
+                samples[k] = CompandingTables.MU_LAW_DECODING[bytes[p] & 0xFF];
+            }
+        }
+
+        @Override
+        void decodeBlock(byte[] bytes, int p, int step, double[] samples, int offset, int count, double scale) {
+            for (int k = offset, to = offset + count; k < to; k++, p += step) {
+                samples[k] = CompandingTables.MU_LAW_DECODING[bytes[p] & 0xFF] * scale;
+            }
+        }
+
+        @Override
+        void encodeBlock(float[] samples, int offset, int count, byte[] bytes, int p, int step) {
+            for (int k = offset, to = offset + count; k < to; k++, p += step) {
+                bytes[p] = (byte) CompandingTables.muLawToBits(samples[k]);
+            }
+        }
+    }
+
+    private static final class ALaw extends SampleCodec {
+        private ALaw(AudioFormat format) {
+            super(format);
+        }
+
+        @Override
+        void decodeBlock(byte[] bytes, int p, int step, float[] samples, int offset, int count) {
+            for (int k = offset, to = offset + count; k < to; k++, p += step) {
+                samples[k] = CompandingTables.A_LAW_DECODING[bytes[p] & 0xFF];
+            }
+        }
+
+        @Override
+        void decodeBlock(byte[] bytes, int p, int step, double[] samples, int offset, int count, double scale) {
+            for (int k = offset, to = offset + count; k < to; k++, p += step) {
+                samples[k] = CompandingTables.A_LAW_DECODING[bytes[p] & 0xFF] * scale;
+            }
+        }
+
+        @Override
+        void encodeBlock(float[] samples, int offset, int count, byte[] bytes, int p, int step) {
+            for (int k = offset, to = offset + count; k < to; k++, p += step) {
+                bytes[p] = (byte) CompandingTables.aLawToBits(samples[k]);
+            }
+        }
+    }
+
+    private static final class Generic extends SampleCodec {
+        private final Encoding encoding;
+        private final double fullScale;
+
+        private Generic(AudioFormat format) {
+            super(format);
+            this.encoding = format.getEncoding();
+            this.fullScale = SimpleAudioConversion.fullScale(bitsPerSample);
+        }
+
+        @Override
+        void decodeBlock(byte[] bytes, int p, int step, float[] samples, int offset, int count) {
+            for (int k = offset, to = offset + count; k < to; k++, p += step) {
+                final long temp = SimpleAudioConversion.unpackBits(bytes, p, bigEndian, bytesPerSample);
+                samples[k] = SimpleAudioConversion.bitsToSample(temp, encoding, bitsPerSample, fullScale);
+            }
+        }
+
+        @Override
+        void decodeBlock(byte[] bytes, int p, int step, double[] samples, int offset, int count, double scale) {
+            for (int k = offset, to = offset + count; k < to; k++, p += step) {
+                final long temp = SimpleAudioConversion.unpackBits(bytes, p, bigEndian, bytesPerSample);
+                samples[k] = SimpleAudioConversion.bitsToSample(temp, encoding, bitsPerSample, fullScale) * scale;
+            }
+        }
+
+        @Override
+        void encodeBlock(float[] samples, int offset, int count, byte[] bytes, int p, int step) {
+            for (int k = offset, to = offset + count; k < to; k++, p += step) {
+                final long temp = SimpleAudioConversion.sampleToBits(samples[k], encoding, bitsPerSample, fullScale);
+                SimpleAudioConversion.packBits(bytes, p, temp, bigEndian, bytesPerSample);
+            }
+        }
+    }
+}
@@ -32,6 +32,9 @@ import static java.lang.Math.exp;
  *     line.write(bytes, 0, blen);
  * }
  * }</pre>
+ * <p>
+ * Samples are converted by the {@link SampleCodec}, specialised for the format; for many conversions
+ * of the same format it can be selected once by {@link SampleCodec#forFormat(AudioFormat)}.
  *
  * @author Radiodef
  * @see <a href="http://stackoverflow.com/a/26824664/2891664">Overview on StackOverflow.com</a>
@@ -63,46 +66,13 @@ public final class SimpleAudioConversion {
                              float[]     samples,
                              int         blen,
                              AudioFormat fmt) {
-        int   bitsPerSample = fmt.getSampleSizeInBits();
-        int  bytesPerSample = bytesPerSample(bitsPerSample);
-        boolean isBigEndian = fmt.isBigEndian();
-        Encoding   encoding = fmt.getEncoding();
-        double    fullScale = fullScale(bitsPerSample);
-
-        int i = 0;
-        int s = 0;
-        while (i < blen) {
-            long temp = unpackBits(bytes, i, isBigEndian, bytesPerSample);
-            float sample = 0f;
-
-            if (encoding == Encoding.PCM_SIGNED) {
-                temp = extendSign(temp, bitsPerSample);
-                sample = (float) (temp / fullScale);
-
-            } else if (encoding == Encoding.PCM_UNSIGNED) {
-                temp = signUnsigned(temp, bitsPerSample);
-                sample = (float) (temp / fullScale);
-
-            } else if (encoding == Encoding.PCM_FLOAT) {
-                if (bitsPerSample == 32) {
-                    sample = Float.intBitsToFloat((int) temp);
-                } else if (bitsPerSample == 64) {
-                    sample = (float) Double.longBitsToDouble(temp);
-                }
-            } else if (encoding == Encoding.ULAW) {
-                sample = bitsToMuLaw(temp);
-
-            } else if (encoding == Encoding.ALAW) {
-                sample = bitsToALaw(temp);
-            }
+        SampleCodec codec = SampleCodec.forFormat(fmt);
+        int bytesPerSample = codec.bytesPerSample();
+        int slen = blen <= 0 ? 0 : (blen + bytesPerSample - 1) / bytesPerSample;
 
-            samples[s] = sample;
-
-            i += bytesPerSample;
-            s++;
-        }
+        codec.decode(bytes, 0, bytesPerSample, samples, 0, slen);
 
-        return s;
+        return slen;
     }
 
     /**
@@ -129,45 +99,74 @@ public final class SimpleAudioConversion {
                            byte[]      bytes,
                            int         slen,
                            AudioFormat fmt) {
-        int   bitsPerSample = fmt.getSampleSizeInBits();
-        int  bytesPerSample = bytesPerSample(bitsPerSample);
-        boolean isBigEndian = fmt.isBigEndian();
-        Encoding   encoding = fmt.getEncoding();
-        double    fullScale = fullScale(bitsPerSample);
-
-        int i = 0;
-        int s = 0;
-        while (s < slen) {
-            float sample = samples[s];
-            long temp = 0L;
-
-            if (encoding == Encoding.PCM_SIGNED) {
-                temp = (long) (sample * fullScale);
-
-            } else if (encoding == Encoding.PCM_UNSIGNED) {
-                temp = (long) (sample * fullScale);
-                temp = unsignSigned(temp, bitsPerSample);
-
-            } else if (encoding == Encoding.PCM_FLOAT) {
-                if (bitsPerSample == 32) {
-                    temp = Float.floatToRawIntBits(sample);
-                } else if (bitsPerSample == 64) {
-                    temp = Double.doubleToRawLongBits(sample);
-                }
-            } else if (encoding == Encoding.ULAW) {
-                temp = muLawToBits(sample);
-
-            } else if (encoding == Encoding.ALAW) {
-                temp = aLawToBits(sample);
+        SampleCodec codec = SampleCodec.forFormat(fmt);
+        int bytesPerSample = codec.bytesPerSample();
+        slen = Math.max(slen, 0);
+
+        codec.encode(samples, 0, slen, bytes, 0, bytesPerSample);
+
+        return slen * bytesPerSample;
+    }
+
+    // Generic conversion of the unpacked bits of a sample in any format
+    static float bitsToSample(long     temp,
+                              Encoding encoding,
+                              int      bitsPerSample,
+                              double   fullScale) {
+        float sample = 0f;
+
+        if (Encoding.PCM_SIGNED.equals(encoding)) {
+            temp = extendSign(temp, bitsPerSample);
+            sample = (float) (temp / fullScale);
+
+        } else if (Encoding.PCM_UNSIGNED.equals(encoding)) {
+            temp = signUnsigned(temp, bitsPerSample);
+            sample = (float) (temp / fullScale);
+
+        } else if (Encoding.PCM_FLOAT.equals(encoding)) {
+            if (bitsPerSample == 32) {
+                sample = Float.intBitsToFloat((int) temp);
+            } else if (bitsPerSample == 64) {
+                sample = (float) Double.longBitsToDouble(temp);
             }
+        } else if (Encoding.ULAW.equals(encoding)) {
+            sample = bitsToMuLaw(temp);
+
+        } else if (Encoding.ALAW.equals(encoding)) {
+            sample = bitsToALaw(temp);
+        }
 
-            packBits(bytes, i, temp, isBigEndian, bytesPerSample);
+        return sample;
+    }
+
+    // Generic conversion of a sample in any format to the bits for packing
+    static long sampleToBits(float    sample,
+                             Encoding encoding,
+                             int      bitsPerSample,
+                             double   fullScale) {
+        long temp = 0L;
 
-            i += bytesPerSample;
-            s++;
+        if (Encoding.PCM_SIGNED.equals(encoding)) {
+            temp = (long) (sample * fullScale);
+
+        } else if (Encoding.PCM_UNSIGNED.equals(encoding)) {
+            temp = (long) (sample * fullScale);
+            temp = unsignSigned(temp, bitsPerSample);
+
+        } else if (Encoding.PCM_FLOAT.equals(encoding)) {
+            if (bitsPerSample == 32) {
+                temp = Float.floatToRawIntBits(sample);
+            } else if (bitsPerSample == 64) {
+                temp = Double.doubleToRawLongBits(sample);
+            }
+        } else if (Encoding.ULAW.equals(encoding)) {
+            temp = muLawToBits(sample);
+
+        } else if (Encoding.ALAW.equals(encoding)) {
+            temp = aLawToBits(sample);
         }
 
-        return i;
+        return temp;
     }
 
     /**
@@ -208,7 +207,7 @@ public final class SimpleAudioConversion {
         return pow(2.0, bitsPerSample - 1);
     }
 
-    private static long unpackBits(byte[]  bytes,
+    static long unpackBits(byte[]  bytes,
                                    int     i,
                                    boolean isBigEndian,
                                    int     bytesPerSample) {
@@ -279,7 +278,7 @@ public final class SimpleAudioConversion {
         return temp;
     }
 
-    private static void packBits(byte[]  bytes,
+    static void packBits(byte[]  bytes,
                                  int     i,
                                  long    temp,
                                  boolean isBigEndian,
@@ -369,14 +368,37 @@ public final class SimpleAudioConversion {
     private static final double LN_A = log(A);
     // if values are below this, the A-law exponent is 0
     private static final double EXP_0 = 1.0 / (1.0 + LN_A);
+    // full scale of 8-bit mu-law and A-law codes
+    private static final double FULL_SCALE_8 = 128.0;
+
+    // mu-law and A-law conversions by lookup tables; results are identical to the formulas below
+    static float bitsToMuLaw(long temp) {
+        return (temp & ~0xffL) == 0L ?
+            CompandingTables.MU_LAW_DECODING[(int) temp] :
+            bitsToMuLawByFormula(temp);
+    }
+
+    static long muLawToBits(float sample) {
+        return CompandingTables.muLawToBits(sample);
+    }
+
+    static float bitsToALaw(long temp) {
+        return (temp & ~0xffL) == 0L ?
+            CompandingTables.A_LAW_DECODING[(int) temp] :
+            bitsToALawByFormula(temp);
+    }
+
+    static long aLawToBits(float sample) {
+        return CompandingTables.aLawToBits(sample);
+    }
 
-    private static float bitsToMuLaw(long temp) {
+    static float bitsToMuLawByFormula(long temp) {
         temp ^= 0xffL;
         if ((temp & 0x80L) == 0x80L) {
             temp = -(temp ^ 0x80L);
         }
 
-        float sample = (float) (temp / fullScale(8));
+        float sample = (float) (temp / FULL_SCALE_8);
 
         return (float) (
             signum(sample)
@@ -387,7 +409,7 @@ public final class SimpleAudioConversion {
         );
     }
 
-    private static long muLawToBits(float sample) {
+    static long muLawToBitsByFormula(float sample) {
         double sign = signum(sample);
         sample = abs(sample);
 
@@ -395,7 +417,7 @@ public final class SimpleAudioConversion {
             sign * (log(1.0 + (MU * sample)) / log(1.0 + MU))
         );
 
-        long temp = (long) (sample * fullScale(8));
+        long temp = (long) (sample * FULL_SCALE_8);
 
         if (temp < 0L) {
             temp = -temp ^ 0x80L;
@@ -404,13 +426,13 @@ public final class SimpleAudioConversion {
         return temp ^ 0xffL;
     }
 
-    private static float bitsToALaw(long temp) {
+    static float bitsToALawByFormula(long temp) {
         temp ^= 0x55L;
         if ((temp & 0x80L) == 0x80L) {
             temp = -(temp ^ 0x80L);
         }
 
-        float sample = (float) (temp / fullScale(8));
+        float sample = (float) (temp / FULL_SCALE_8);
 
         float sign = signum(sample);
         sample = abs(sample);
@@ -424,7 +446,7 @@ public final class SimpleAudioConversion {
         return sign * sample;
     }
 
-    private static long aLawToBits(float sample) {
+    static long aLawToBitsByFormula(float sample) {
         double sign = signum(sample);
         sample = abs(sample);
 
@@ -436,7 +458,7 @@ public final class SimpleAudioConversion {
 
         sample *= sign;
 
-        long temp = (long) (sample * fullScale(8));
+        long temp = (long) (sample * FULL_SCALE_8);
 
         if (temp < 0L) {
             temp = -temp ^ 0x80L;
@@ -0,0 +1,61 @@
+package com.envionsoftware.sounds.tests;
+
+import com.envionsoftware.sounds.analysis.AudioAnalyser;
+import com.envionsoftware.sounds.analysis.AudioLocalMaximumApertureInfo;
+import com.envionsoftware.sounds.analysis.ChunkedAudioAnalyser;
+import com.envionsoftware.sounds.analysis.DetectionListener;
+import com.envionsoftware.sounds.convertors.MappedWavFile;
+import com.envionsoftware.sounds.convertors.SampleCodec;
+
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.File;
+import java.io.IOException;
+
+// Analyses a WAV file of any length in bounded memory by ChunkedAudioAnalyser and prints strong signals
+// with their absolute times
+public class AnalyseLongWav {
+    private static final int LOUD_SOUND_AMPLITUDE = Integer.getInteger("loadSoundAmplitude", 1000);
+    private static final int CHANNEL = Integer.getInteger("channel", 0);
+    private static final double CHUNK_DURATION = Double.parseDouble(System.getProperty("chunkDuration", "5.0"));
+    // - seconds
+
+    public static void main(String[] args) throws IOException, UnsupportedAudioFileException {
+        if (args.length < 1) {
+            System.out.printf("Usage: %s input_file.wav%n", AnalyseLongWav.class.getName());
+            return;
+        }
+        final File inputFile = new File(args[0]);
+        try (final MappedWavFile wavFile = MappedWavFile.open(inputFile.toPath())) {
+            final double singleSampleDurationInSeconds = 1.0 / wavFile.getFrameRate();
+            final long numberOfSamples = wavFile.getNumberOfFrames();
+            System.out.printf("Format: %s; duration: %.3f seconds (%d frames)%n",
+                wavFile.getFormat(), numberOfSamples * singleSampleDurationInSeconds, numberOfSamples);
+            final AudioAnalyser parameters = new AudioAnalyser(singleSampleDurationInSeconds);
+            parameters.setGlobalAmplitudeOfLoudSound(LOUD_SOUND_AMPLITUDE);
+            final ChunkedAudioAnalyser analyser = new ChunkedAudioAnalyser(singleSampleDurationInSeconds);
+            analyser.setParameters(parameters);
+            analyser.setChunkLength((int) Math.max(1, Math.round(CHUNK_DURATION / singleSampleDurationInSeconds)));
+            analyser.setDetectionListener(new DetectionListener() {
+                @Override
+                public void goodLocalMaximumFound(AudioLocalMaximumApertureInfo info) {
+                    System.out.printf("Strong signal at %.3f sec: %s%n",
+                        info.getAbsoluteSampleIndex() * singleSampleDurationInSeconds, info);
+                }
+            });
+            System.out.printf("Analysing by chunks of %d samples (%d samples in memory)...%n",
+                analyser.getChunkLength(), analyser.streamingCapacity());
+            long t1 = System.nanoTime();
+            analyser.analyze(numberOfSamples, (position, result, offset, count) ->
+                wavFile.decodeChannel(CHANNEL, position, result, offset, count, SampleCodec.INT16_SCALE));
+            long t2 = System.nanoTime();
+            System.out.printf("Analysing time %.3f ms; typical signal %.3f, max signal %.3f%n",
+                (t2 - t1) * 1e-6, analyser.typicalAveragedSignal(), analyser.maxAbsoluteSignal());
+            System.out.printf("Number of strong signals: %d (%d local maximums)%n",
+                analyser.numberOfGoodLocalMaximums(), analyser.numberOfLocalMaximums());
+            System.out.printf("Maximal/total number of sequential strong signals: %d/%d%n",
+                analyser.maxNumberOfSequentialGoodMaximums(), analyser.totalNumberOfSequentialGoodMaximums());
+            final Runtime runtime = Runtime.getRuntime();
+            System.out.printf("Used memory: %.1f MB%n", (runtime.totalMemory() - runtime.freeMemory()) / 1048576.0);
+        }
+    }
+}
@@ -1,8 +1,11 @@
 package com.envionsoftware.sounds.tests;
 
-import com.envionsoftware.sounds.analysis.AnalysingTools;
 import com.envionsoftware.sounds.analysis.AudioAnalyser;
 import com.envionsoftware.sounds.analysis.AudioLocalMaximumApertureInfo;
+import com.envionsoftware.sounds.analysis.MultiChannelAudioAnalyser;
+import com.envionsoftware.sounds.analysis.SampleSource;
+import com.envionsoftware.sounds.convertors.MappedWavFile;
+import com.envionsoftware.sounds.convertors.SampleCodec;
 
 import javax.imageio.ImageIO;
 import javax.sound.sampled.*;
@@ -15,43 +18,42 @@ import java.io.InputStream;
 
 public class AnalyseWav {
     private static final int LOUD_SOUND_AMPLITUDE = Integer.getInteger("loadSoundAmplitude", 1000);
-    private static int[][] getUnscaledAmplitudes(byte[] eightBitByteArray, AudioFormat audioFormat) {
-        if (audioFormat.getSampleSizeInBits() != 16
-            || !audioFormat.getEncoding().equals(AudioFormat.Encoding.PCM_SIGNED))
-        {
-            throw new IllegalArgumentException("Unsupported audio format: " + audioFormat);
-        }
-        int channels = audioFormat.getChannels();
-        final boolean bigEndian = audioFormat.isBigEndian();
-        int[][] result = new int[channels][eightBitByteArray.length / (2 * channels)];
-        int index = 0;
-
-        for (int audioByte = 0; audioByte < eightBitByteArray.length; ) {
-            for (int channel = 0; channel < channels; channel++) {
-                result[channel][index] = unpack16Bit(eightBitByteArray, audioByte, bigEndian);
-                audioByte += 2;
-            }
-            index++;
-        }
+    private static final String CHANNELS = System.getProperty("channels", "0");
+    // - comma-separated list of analysed channels or "all"
+    private static final int NUMBER_OF_THREADS = Integer.getInteger("threads",
+        Runtime.getRuntime().availableProcessors());
+    private static final int DECIMATION = Integer.getInteger("decimation", 1);
+    // - for example, 32 for 44100 Hz: analysis of ~1.4 kHz energy envelope
 
+    // Decodes only the specified channels in units of 16-bit PCM: result[k] contains samples of channel channels[k]
+    private static double[][] getAmplitudes(byte[] bytes, AudioFormat audioFormat, int[] channels) {
+        final SampleCodec codec = SampleCodec.forFormat(audioFormat);
+        final int numberOfFrames = bytes.length / codec.frameSize();
+        final double[][] result = new double[channels.length][numberOfFrames];
+        codec.decodeChannels(bytes, 0, numberOfFrames, channels, result, 0, SampleCodec.INT16_SCALE);
         return result;
     }
 
-    private static int unpack16Bit(byte[] bytes, int index, boolean isBigEndian) {
-        if (isBigEndian) {
-            return (short) (
-                ((bytes[index] & 0xff) << 8)
-                    | (bytes[index + 1] & 0xff)
-            );
-        } else {
-            return (short) (
-                (bytes[index] & 0xff)
-                    | ((bytes[index + 1] & 0xff) << 8)
-            );
+    private static int[] requestedChannels(String channels, int numberOfChannels) {
+        if (channels.equals("all")) {
+            final int[] result = new int[numberOfChannels];
+            for (int k = 0; k < result.length; k++) {
+                result[k] = k;
+            }
+            return result;
         }
+        final String[] items = channels.split(",");
+        final int[] result = new int[items.length];
+        for (int k = 0; k < result.length; k++) {
+            result[k] = Integer.parseInt(items[k].trim());
+            if (result[k] < 0 || result[k] >= numberOfChannels) {
+                throw new IllegalArgumentException("Invalid channel " + result[k]
+                    + " (number of channels is " + numberOfChannels + ")");
+            }
+        }
+        return result;
     }
 
-
     private static BufferedImage drawGraph(AudioAnalyser analyser, int w, int h) {
         final double[] samples = analyser.amplitudeSamples();
         final BufferedImage image = new BufferedImage(w, h, BufferedImage.TYPE_3BYTE_BGR);
@@ -128,11 +130,12 @@ public class AnalyseWav {
         }
         g.setStroke(defaultStroke);
         g.setColor(new Color(255, 128, 255));
+        final int decimation = analyser.isStreaming() ? 1 : analyser.getDecimation();
         final double[] averagedImpulse = analyser.averagedImpulseSquare();
         for (int k = 0; k < averagedImpulse.length - 1; k++) {
-            final int sampleIndex = k + (samples.length - averagedImpulse.length) / 2;
+            final int sampleIndex = k * decimation + (samples.length - averagedImpulse.length * decimation) / 2;
             final int x1 = (int) Math.round(sampleIndex * scaleX);
-            final int x2 = (int) Math.round((sampleIndex + 1) * scaleX);
+            final int x2 = (int) Math.round((sampleIndex + decimation) * scaleX);
             final int y1 = h / 2 - (int) Math.round(Math.sqrt(averagedImpulse[k]) * scaleY);
             final int y2 = h / 2 - (int) Math.round(Math.sqrt(averagedImpulse[k + 1]) * scaleY);
             g.drawLine(x1, y1, x2, y2);
@@ -140,9 +143,9 @@ public class AnalyseWav {
         g.setColor(new Color(0, 0, 255));
         final double[] averaged = analyser.averagedSquare();
         for (int k = 0; k < averaged.length - 1; k++) {
-            final int sampleIndex = k + (samples.length - averaged.length) / 2;
+            final int sampleIndex = k * decimation + (samples.length - averaged.length * decimation) / 2;
             final int x1 = (int) Math.round(sampleIndex * scaleX);
-            final int x2 = (int) Math.round((sampleIndex + 1) * scaleX);
+            final int x2 = (int) Math.round((sampleIndex + decimation) * scaleX);
             final int y1 = h / 2 - (int) Math.round(Math.sqrt(averaged[k]) * scaleY);
             final int y2 = h / 2 - (int) Math.round(Math.sqrt(averaged[k + 1]) * scaleY);
             g.drawLine(x1, y1, x2, y2);
@@ -189,48 +192,141 @@ public class AnalyseWav {
         }
         final int width = args.length > 2 ? Integer.parseInt(args[2]) : 8000;
         final int height = args.length > 3 ? Integer.parseInt(args[3]) : 512;
-        final int[][] amplitude;
-        final double singleSampleDurationInSeconds;
+        final AudioFormat audioFormat;
+        final int[] channels;
+        final int numberOfSamples;
+        final SampleSource[] sources;
+        // - sources[k] decodes channel channels[k] directly into the analyser
         System.out.printf("Decoding audio file %s...%n", inputFile);
-        try (final AudioInputStream inputStream = AudioSystem.getAudioInputStream(inputFile)) {
-            final AudioFormat audioFormat = inputStream.getFormat();
-            singleSampleDurationInSeconds = 1.0 / audioFormat.getFrameRate();
-            final byte[] bytes = readAllBytes(inputStream);
-            amplitude = getUnscaledAmplitudes(bytes, audioFormat);
-            System.out.printf("Detected format: %s; duration: %.3f seconds (%d frames * %.3f ms, %d samples)%n",
+        try (final MappedWavFile wavFile = openMappedWavFile(inputFile)) {
+            if (wavFile != null) {
+                audioFormat = wavFile.getFormat();
+                if (wavFile.getNumberOfFrames() > Integer.MAX_VALUE) {
+                    throw new IllegalArgumentException("Too long file: " + wavFile.getNumberOfFrames() + " frames");
+                }
+                numberOfSamples = (int) wavFile.getNumberOfFrames();
+                channels = requestedChannels(CHANNELS, audioFormat.getChannels());
+                sources = new SampleSource[channels.length];
+                for (int k = 0; k < channels.length; k++) {
+                    final int channel = channels[k];
+                    sources[k] = (result, offset, count) ->
+                        wavFile.decodeChannel(channel, 0, result, offset, count, SampleCodec.INT16_SCALE);
+                }
+            } else {
+                final double[][] amplitude;
+                try (final AudioInputStream inputStream = AudioSystem.getAudioInputStream(inputFile)) {
+                    audioFormat = inputStream.getFormat();
+                    final byte[] bytes = readAllBytes(inputStream);
+                    channels = requestedChannels(CHANNELS, audioFormat.getChannels());
+                    amplitude = getAmplitudes(bytes, audioFormat, channels);
+                }
+                numberOfSamples = amplitude[0].length;
+                sources = new SampleSource[channels.length];
+                for (int k = 0; k < channels.length; k++) {
+                    final double[] channelAmplitude = amplitude[k];
+                    sources[k] = (result, offset, count) ->
+                        System.arraycopy(channelAmplitude, 0, result, offset, count);
+                }
+            }
+            final double singleSampleDurationInSeconds = 1.0 / audioFormat.getFrameRate();
+            System.out.printf("Detected format: %s; duration: %.3f seconds (%d frames * %.3f ms)%n",
                 audioFormat,
-                inputStream.getFrameLength() * singleSampleDurationInSeconds,
-                inputStream.getFrameLength(),
-                singleSampleDurationInSeconds * 0.001,
-                amplitude[0].length);
+                numberOfSamples * singleSampleDurationInSeconds,
+                numberOfSamples,
+                singleSampleDurationInSeconds * 1000.0);
+
+            if (channels.length > 1) {
+                analyseChannels(sources, numberOfSamples, channels, singleSampleDurationInSeconds,
+                    graphFile, width, height);
+                return;
+            }
+            final AudioAnalyser analyser = new AudioAnalyser(singleSampleDurationInSeconds);
+            analyser.setGlobalAmplitudeOfLoudSound(LOUD_SOUND_AMPLITUDE);
+            analyser.setDecimation(DECIMATION);
+            analyser.setSamples(numberOfSamples, sources[0]);
+            analyser.preprocess();
+            analyser.analyze();
+            // - warming JVM...
+            System.out.println("Analysing...");
+            long t1 = System.nanoTime();
+            analyser.setSamples(numberOfSamples, sources[0]);
+            long t2 = System.nanoTime();
+            analyser.preprocess();
+            long t3 = System.nanoTime();
+            analyser.analyze();
+            analyser.postprocessFoundMaximums();
+            long t4 = System.nanoTime();
+            System.out.printf("Analysing time %.3f ms decoding + %.3f ms preprocessing + %.3f ms analysis%n",
+                (t2 - t1) * 1e-6, (t3 - t2) * 1e-6, (t4 - t3) * 1e-6);
+            System.out.printf("Number of strong signals: %d%n", analyser.goodLocalMaximums().size());
+            saveGraph(analyser, graphFile, width, height);
+            System.out.printf("Maximal number of sequential strong signals: %d%n",
+                analyser.maxNumberOfSequentialGoodMaximums());
+            System.out.printf("Total number of sequential strong signals: %d%n%n",
+                analyser.totalNumberOfSequentialGoodMaximums());
+        }
+    }
+
+    // Returns null if the file is not a RIFF/WAVE file, supported by MappedWavFile
+    private static MappedWavFile openMappedWavFile(File file) throws IOException {
+        try {
+            return MappedWavFile.open(file.toPath());
+        } catch (UnsupportedAudioFileException e) {
+            System.out.printf("Cannot map the file (%s); it will be decoded by AudioSystem%n", e.getMessage());
+            return null;
+        }
+    }
+
+    private static void analyseChannels(
+        SampleSource[] sources,
+        int numberOfSamples,
+        int[] channels,
+        double singleSampleDurationInSeconds,
+        File graphFile,
+        int width,
+        int height)
+        throws IOException
+    {
+        try (final MultiChannelAudioAnalyser analyser = new MultiChannelAudioAnalyser(
+            singleSampleDurationInSeconds, channels.length))
+        {
+            analyser.setNumberOfThreads(NUMBER_OF_THREADS);
+            for (int k = 0; k < channels.length; k++) {
+                analyser.analyser(k).setGlobalAmplitudeOfLoudSound(LOUD_SOUND_AMPLITUDE);
+                analyser.analyser(k).setDecimation(DECIMATION);
+                analyser.setSamples(k, numberOfSamples, sources[k]);
+            }
+            analyser.analyze();
+            // - warming JVM...
+            System.out.printf("Analysing %d channels in %d threads...%n", channels.length, NUMBER_OF_THREADS);
+            long t1 = System.nanoTime();
+            analyser.analyze();
+            long t2 = System.nanoTime();
+            System.out.printf("Analysing time %.3f ms%n", (t2 - t1) * 1e-6);
+            for (int k = 0; k < channels.length; k++) {
+                final AudioAnalyser channelAnalyser = analyser.analyser(k);
+                System.out.printf("Channel %d: %d strong signals, maximal/total number of sequential: %d/%d%n",
+                    channels[k],
+                    channelAnalyser.goodLocalMaximums().size(),
+                    channelAnalyser.maxNumberOfSequentialGoodMaximums(),
+                    channelAnalyser.totalNumberOfSequentialGoodMaximums());
+            }
+            System.out.printf("Number of strong signals in all channels: %d%n",
+                analyser.mergedGoodLocalMaximums().size());
+            for (MultiChannelAudioAnalyser.ChannelLocalMaximum maximum : analyser.mergedGoodLocalMaximums()) {
+                System.out.printf("Strong signal in channel %d: %s%n",
+                    channels[maximum.getChannel()], maximum.getInfo());
+            }
+            System.out.printf("Graph is made for channel %d%n", channels[0]);
+            saveGraph(analyser.analyser(0), graphFile, width, height);
         }
-//        System.out.println(Arrays.toString(amplitude[0]));
+    }
 
-        final double[] samples = AnalysingTools.intToDouble(amplitude[0]);
-        final AudioAnalyser analyser = new AudioAnalyser(singleSampleDurationInSeconds);
-        analyser.setGlobalAmplitudeOfLoudSound(LOUD_SOUND_AMPLITUDE);
-        analyser.setSamples(samples);
-        analyser.preprocess();
-        analyser.analyze();
-        // - warming JVM...
-        System.out.println("Analysing...");
-        long t1 = System.nanoTime();
-        analyser.setSamples(samples);
-        long t2 = System.nanoTime();
-        analyser.preprocess();
-        long t3 = System.nanoTime();
-        analyser.analyze();
-        analyser.postprocessFoundMaximums();
-        long t4 = System.nanoTime();
-        System.out.printf("Analysing time %.3f ms setting + %.3f ms preprocessing + %.3f ms analysis%n",
-            (t2 - t1) * 1e-6, (t3 - t2) * 1e-6, (t4 - t3) * 1e-6);
-        System.out.printf("Number of strong signals: %d%n", analyser.goodLocalMaximums().size());
+    private static void saveGraph(AudioAnalyser analyser, File graphFile, int width, int height)
+        throws IOException
+    {
         System.out.println("Making graph...");
         ImageIO.write(drawGraph(analyser, width, height), getImageFormat(graphFile.getName()), graphFile);
         System.out.printf("Graph saved in %s%n%n", graphFile);
-        System.out.printf("Maximal number of sequential strong signals: %d%n",
-            analyser.maxNumberOfSequentialGoodMaximums());
-        System.out.printf("Total number of sequential strong signals: %d%n%n",
-            analyser.totalNumberOfSequentialGoodMaximums());
     }
 }
@@ -0,0 +1,99 @@
+package com.envionsoftware.sounds.tests;
+
+import com.envionsoftware.sounds.convertors.SampleCodec;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioFormat.Encoding;
+import java.util.Arrays;
+import java.util.Random;
+
+// Compares the speed of specialised codecs of SampleCodec with the generic per-sample conversion
+// and checks that both give identical samples and bytes. Every operation is first warmed up, then timed
+// in its own loop of runs; the median time of these runs is reported.
+// Usage: BenchmarkSampleConversion [number_of_samples [number_of_tests [number_of_warm_ups]]]
+public class BenchmarkSampleConversion {
+    private static final AudioFormat[] FORMATS = {
+        new AudioFormat(Encoding.PCM_UNSIGNED, 44100, 8, 1, 1, 44100, false),
+        new AudioFormat(Encoding.PCM_SIGNED, 44100, 8, 1, 1, 44100, false),
+        new AudioFormat(Encoding.PCM_SIGNED, 44100, 16, 1, 2, 44100, false),
+        new AudioFormat(Encoding.PCM_SIGNED, 44100, 16, 1, 2, 44100, true),
+        new AudioFormat(Encoding.PCM_SIGNED, 44100, 24, 1, 3, 44100, false),
+        new AudioFormat(Encoding.PCM_SIGNED, 44100, 24, 1, 3, 44100, true),
+        new AudioFormat(Encoding.PCM_SIGNED, 44100, 32, 1, 4, 44100, false),
+        new AudioFormat(Encoding.PCM_SIGNED, 44100, 32, 1, 4, 44100, true),
+        new AudioFormat(Encoding.PCM_FLOAT, 44100, 32, 1, 4, 44100, false),
+        new AudioFormat(Encoding.PCM_FLOAT, 44100, 64, 1, 8, 44100, true),
+        new AudioFormat(Encoding.ULAW, 8000, 8, 1, 1, 8000, false),
+        new AudioFormat(Encoding.ALAW, 8000, 8, 1, 1, 8000, false),
+    };
+
+    public static void main(String[] args) {
+        final int numberOfSamples = args.length > 0 ? Integer.parseInt(args[0]) : 1 << 20;
+        final int numberOfTests = args.length > 1 ? Integer.parseInt(args[1]) : 15;
+        final int numberOfWarmUps = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        final Random random = new Random(157);
+        int numberOfDifferences = 0;
+        for (AudioFormat format : FORMATS) {
+            final SampleCodec generic = SampleCodec.generic(format);
+            final SampleCodec codec = SampleCodec.forFormat(format);
+            final int bytesPerSample = codec.bytesPerSample();
+            final byte[] bytes = new byte[numberOfSamples * bytesPerSample];
+            random.nextBytes(bytes);
+            // - for floating-point formats, includes NaN and infinities
+            final float[] samples = new float[numberOfSamples];
+            for (int k = 0; k < numberOfSamples; k++) {
+                samples[k] = (float) (random.nextDouble() * 2.2 - 1.1);
+                // - including values out of -1.0..1.0 range, which are wrapped by integer PCM formats
+            }
+            final float[] expectedSamples = new float[numberOfSamples];
+            final float[] actualSamples = new float[numberOfSamples];
+            final byte[] expectedBytes = new byte[bytes.length];
+            final byte[] actualBytes = new byte[bytes.length];
+            final Runnable[] operations = {
+                () -> generic.decode(bytes, 0, bytesPerSample, expectedSamples, 0, numberOfSamples),
+                () -> codec.decode(bytes, 0, bytesPerSample, actualSamples, 0, numberOfSamples),
+                () -> generic.encode(samples, 0, numberOfSamples, expectedBytes, 0, bytesPerSample),
+                () -> codec.encode(samples, 0, numberOfSamples, actualBytes, 0, bytesPerSample),
+            };
+            for (Runnable operation : operations) {
+                for (int test = 0; test < numberOfWarmUps; test++) {
+                    operation.run();
+                }
+            }
+            final double[] times = new double[operations.length];
+            for (int k = 0; k < operations.length; k++) {
+                times[k] = medianTime(operations[k], numberOfTests) / numberOfSamples;
+            }
+            final double genericDecodeTime = times[0], decodeTime = times[1];
+            final double genericEncodeTime = times[2], encodeTime = times[3];
+            int differentSamples = 0;
+            for (int k = 0; k < numberOfSamples; k++) {
+                if (Float.floatToRawIntBits(expectedSamples[k]) != Float.floatToRawIntBits(actualSamples[k])) {
+                    differentSamples++;
+                }
+            }
+            final boolean sameBytes = Arrays.equals(expectedBytes, actualBytes);
+            numberOfDifferences += differentSamples + (sameBytes ? 0 : 1);
+            System.out.printf("%s:%n  decoding %.3f ns/sample (generic %.3f, %.1fx), %d different samples;%n"
+                    + "  encoding %.3f ns/sample (generic %.3f, %.1fx), %s bytes%n",
+                codec,
+                decodeTime, genericDecodeTime, genericDecodeTime / decodeTime, differentSamples,
+                encodeTime, genericEncodeTime, genericEncodeTime / encodeTime, sameBytes ? "same" : "DIFFERENT");
+        }
+        System.out.println(numberOfDifferences == 0 ? "OK" : "DIFFERENT");
+    }
+
+    // Median time of numberOfTests sequential runs in nanoseconds (the operation should be warmed up before)
+    private static double medianTime(Runnable operation, int numberOfTests) {
+        final long[] times = new long[numberOfTests];
+        for (int test = 0; test < numberOfTests; test++) {
+            final long t1 = System.nanoTime();
+            operation.run();
+            times[test] = System.nanoTime() - t1;
+        }
+        Arrays.sort(times);
+        return numberOfTests % 2 == 1 ?
+            times[numberOfTests / 2] :
+            0.5 * (times[numberOfTests / 2 - 1] + times[numberOfTests / 2]);
+    }
+}
@@ -0,0 +1,159 @@
+package com.envionsoftware.sounds.tests;
+
+import com.envionsoftware.sounds.analysis.AudioAnalyser;
+import com.envionsoftware.sounds.analysis.AudioLocalMaximumApertureInfo;
+import com.envionsoftware.sounds.analysis.Int16AudioAnalyser;
+import com.envionsoftware.sounds.convertors.SampleCodec;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Random;
+
+// Checks that Int16AudioAnalyser finds the same local maximums (with the same good/bad classification and
+// the same values) and the same typical signal as usual AudioAnalyser. Without arguments, synthetic signals
+// are checked; exits with status 1 if any difference is found.
+public class CompareInt16Analysis {
+    private static final int LOUD_SOUND_AMPLITUDE = Integer.getInteger("loudSoundAmplitude", 1000);
+    private static final int NUMBER_OF_SYNTHETIC_SIGNALS = 8;
+    private static final double SYNTHETIC_FRAME_RATE = 44100.0;
+    private static final double SYNTHETIC_DURATION = 60.0;
+
+    private static short[] getChannel(byte[] bytes, AudioFormat audioFormat, int channel) {
+        final SampleCodec codec = SampleCodec.forFormat(audioFormat);
+        final short[] result = new short[bytes.length / codec.frameSize()];
+        codec.decode(bytes, channel * codec.bytesPerSample(), codec.frameSize(), result, 0, result.length);
+        return result;
+    }
+
+    // Noise with slowly changing loudness (so that averaged sums are both less and greater than 2^24,
+    // where float sums are not exact), a square wave (equal float sums) and bursts of different durations
+    // and loudness around the thresholds of good maximums and short impulses
+    private static short[] syntheticSignal(long seed, int length) {
+        final Random random = new Random(seed);
+        final double[] signal = new double[length];
+        final double envelopePeriod = (5.0 + 10.0 * random.nextDouble()) * SYNTHETIC_FRAME_RATE;
+        for (int k = 0; k < length; k++) {
+            final double background = 30.0 + 1500.0 * (0.5 + 0.5 * Math.sin(2.0 * Math.PI * k / envelopePeriod));
+            signal[k] = background * random.nextGaussian();
+        }
+        final int squareFrom = random.nextInt(length / 2);
+        final int squareLength = (int) (2.0 * SYNTHETIC_FRAME_RATE);
+        for (int k = squareFrom; k < Math.min(squareFrom + squareLength, length); k++) {
+            signal[k] = (k / 50) % 2 == 0 ? 800.0 : -800.0;
+        }
+        for (int position = 0; ; ) {
+            position += (int) ((0.5 + 2.5 * random.nextDouble()) * SYNTHETIC_FRAME_RATE);
+            final int burstLength = (int) ((0.01 + 0.6 * random.nextDouble()) * SYNTHETIC_FRAME_RATE);
+            if (position + burstLength >= length) {
+                break;
+            }
+            final double amplitude = 200.0 + 6000.0 * random.nextDouble();
+            final double frequency = 200.0 + 2000.0 * random.nextDouble();
+            for (int k = 0; k < burstLength; k++) {
+                signal[position + k] += amplitude * Math.sin(2.0 * Math.PI * frequency * k / SYNTHETIC_FRAME_RATE);
+            }
+        }
+        final short[] result = new short[length];
+        for (int k = 0; k < length; k++) {
+            result[k] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round(signal[k])));
+        }
+        return result;
+    }
+
+    // Returns the number of differences
+    private static int compare(String name, short[] samples, double singleSampleDurationInSeconds, int numberOfTests) {
+        final double[] doubleSamples = new double[samples.length];
+        for (int k = 0; k < samples.length; k++) {
+            doubleSamples[k] = samples[k];
+        }
+        final AudioAnalyser analyser = new AudioAnalyser(singleSampleDurationInSeconds);
+        final Int16AudioAnalyser int16Analyser = new Int16AudioAnalyser(singleSampleDurationInSeconds);
+        analyser.setGlobalAmplitudeOfLoudSound(LOUD_SOUND_AMPLITUDE);
+        int16Analyser.setParameters(analyser);
+        for (int test = 1; test <= numberOfTests; test++) {
+            long t1 = System.nanoTime();
+            analyser.setSamples(doubleSamples);
+            analyser.preprocess();
+            analyser.analyze();
+            long t2 = System.nanoTime();
+            int16Analyser.setSamples(samples);
+            int16Analyser.preprocess();
+            int16Analyser.analyze();
+            long t3 = System.nanoTime();
+            System.out.printf("%s, test #%d: double analysis %.3f ms, 16-bit analysis %.3f ms%n",
+                name, test, (t2 - t1) * 1e-6, (t3 - t2) * 1e-6);
+        }
+        int differences = 0;
+        if (analyser.typicalAveragedSignal() != int16Analyser.typicalAveragedSignal()) {
+            differences++;
+            System.out.printf("Different typical signal: %s and %s%n",
+                analyser.typicalAveragedSignal(), int16Analyser.typicalAveragedSignal());
+        }
+        final List<AudioLocalMaximumApertureInfo> expected = analyser.allLocalMaximums();
+        final List<AudioLocalMaximumApertureInfo> actual = int16Analyser.allLocalMaximums();
+        for (int k = 0, m = Math.max(expected.size(), actual.size()); k < m; k++) {
+            final AudioLocalMaximumApertureInfo e = k < expected.size() ? expected.get(k) : null;
+            final AudioLocalMaximumApertureInfo a = k < actual.size() ? actual.get(k) : null;
+            if (e == null || a == null
+                || e.getLocalMaximumSampleIndex() != a.getLocalMaximumSampleIndex()
+                || e.isGoodLocalMaximum() != a.isGoodLocalMaximum()
+                || e.isShortImpulse() != a.isShortImpulse())
+            {
+                differences++;
+                System.out.printf("Different detection #%d:%n  %s%n  %s%n", k, e, a);
+            } else if (!e.toString().equals(a.toString())) {
+                differences++;
+                System.out.printf("Different values #%d:%n  %s%n  %s%n", k, e, a);
+            }
+        }
+        System.out.printf("%s: %d local maximums (%d good) and %d local maximums (%d good), %d differences%n",
+            name, expected.size(), analyser.goodLocalMaximums().size(),
+            actual.size(), int16Analyser.goodLocalMaximums().size(), differences);
+        return differences;
+    }
+
+    public static void main(String[] args) throws IOException, UnsupportedAudioFileException {
+        if (args.length > 0 && args[0].startsWith("-")) {
+            System.out.printf("Usage: %s [some_file.wav [number_of_tests]]%n", CompareInt16Analysis.class.getName());
+            return;
+        }
+        final int numberOfTests = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+        int differences = 0;
+        for (int k = 1; k <= NUMBER_OF_SYNTHETIC_SIGNALS; k++) {
+            final short[] samples = syntheticSignal(k, (int) (SYNTHETIC_DURATION * SYNTHETIC_FRAME_RATE));
+            differences += compare("Synthetic signal #" + k, samples, 1.0 / SYNTHETIC_FRAME_RATE, numberOfTests);
+        }
+        if (args.length > 0) {
+            final File inputFile = new File(args[0]);
+            final short[] samples;
+            final double singleSampleDurationInSeconds;
+            try (final AudioInputStream inputStream = AudioSystem.getAudioInputStream(inputFile)) {
+                final AudioFormat audioFormat = inputStream.getFormat();
+                singleSampleDurationInSeconds = 1.0 / audioFormat.getFrameRate();
+                samples = getChannel(readAllBytes(inputStream), audioFormat, 0);
+            }
+            differences += compare(inputFile.getName(), samples, singleSampleDurationInSeconds, numberOfTests);
+        }
+        System.out.println(differences == 0 ? "OK" : "DIFFERENT");
+        if (differences != 0) {
+            System.exit(1);
+        }
+    }
+
+    private static byte[] readAllBytes(InputStream inputStream) throws IOException {
+        try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            byte[] buffer = new byte[65536];
+            for (int len; (len = inputStream.read(buffer)) != -1; ) {
+                out.write(buffer, 0, len);
+            }
+            return out.toByteArray();
+        }
+    }
+}
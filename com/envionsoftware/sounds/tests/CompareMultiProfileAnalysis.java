@@ -0,0 +1,115 @@
+package com.envionsoftware.sounds.tests;
+
+import com.envionsoftware.sounds.analysis.AudioAnalyser;
+import com.envionsoftware.sounds.analysis.AudioLocalMaximumApertureInfo;
+import com.envionsoftware.sounds.analysis.MultiProfileAudioAnalyser;
+import com.envionsoftware.sounds.convertors.SampleCodec;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+// Checks that MultiProfileAudioAnalyser finds the same local maximums as separate AudioAnalyser instances
+public class CompareMultiProfileAnalysis {
+    private static final int LOUD_SOUND_AMPLITUDE = Integer.getInteger("loadSoundAmplitude", 1000);
+    private static final String[] PROFILE_NAMES = {"cries", "claps", "alarms"};
+
+    private static double[] getChannel(byte[] bytes, AudioFormat audioFormat, int channel) {
+        final SampleCodec codec = SampleCodec.forFormat(audioFormat);
+        final double[] result = new double[bytes.length / codec.frameSize()];
+        codec.decode(bytes, channel * codec.bytesPerSample(), codec.frameSize(), result, 0, result.length,
+            SampleCodec.INT16_SCALE);
+        return result;
+    }
+
+    private static void customize(AudioAnalyser analyser, int profile) {
+        analyser.setGlobalAmplitudeOfLoudSound(LOUD_SOUND_AMPLITUDE);
+        switch (profile) {
+            case 1:
+                // claps/impacts: the same averaging, short local maximum aperture, strict impulse check
+                analyser.setLocalMaxAperture(0.1);
+                analyser.setRatioOfImpulseAndSilence(4.0);
+                break;
+            case 2:
+                // long alarms: wide averaging, the same impulse averaging
+                analyser.setAveragingAperture(1.0);
+                analyser.setLocalMaxAperture(1.5);
+                analyser.setLocalMaxWideAperture(8.0);
+                analyser.setMaxImpulseDuration(2.0);
+                break;
+        }
+    }
+
+    public static void main(String[] args) throws IOException, UnsupportedAudioFileException {
+        if (args.length < 1) {
+            System.out.printf("Usage: %s some_file.wav [number_of_tests]%n",
+                CompareMultiProfileAnalysis.class.getName());
+            return;
+        }
+        final File inputFile = new File(args[0]);
+        final int numberOfTests = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        final double[] samples;
+        final double singleSampleDurationInSeconds;
+        try (final AudioInputStream inputStream = AudioSystem.getAudioInputStream(inputFile)) {
+            final AudioFormat audioFormat = inputStream.getFormat();
+            singleSampleDurationInSeconds = 1.0 / audioFormat.getFrameRate();
+            samples = getChannel(readAllBytes(inputStream), audioFormat, 0);
+        }
+        final int numberOfProfiles = PROFILE_NAMES.length;
+        final AudioAnalyser[] analysers = new AudioAnalyser[numberOfProfiles];
+        final MultiProfileAudioAnalyser multiProfileAnalyser = new MultiProfileAudioAnalyser(
+            singleSampleDurationInSeconds, numberOfProfiles);
+        for (int k = 0; k < numberOfProfiles; k++) {
+            analysers[k] = new AudioAnalyser(singleSampleDurationInSeconds);
+            customize(analysers[k], k);
+            customize(multiProfileAnalyser.profile(k), k);
+        }
+        for (int test = 1; test <= numberOfTests; test++) {
+            long t1 = System.nanoTime();
+            for (AudioAnalyser analyser : analysers) {
+                analyser.setSamples(samples);
+                analyser.preprocess();
+                analyser.analyze();
+                analyser.postprocessFoundMaximums();
+            }
+            long t2 = System.nanoTime();
+            multiProfileAnalyser.setSamples(samples);
+            multiProfileAnalyser.analyze();
+            long t3 = System.nanoTime();
+            System.out.printf("Test #%d: separate analysis %.3f ms, multi-profile analysis %.3f ms "
+                    + "(%d shared averaged arrays)%n",
+                test, (t2 - t1) * 1e-6, (t3 - t2) * 1e-6, multiProfileAnalyser.numberOfSharedAveragedArrays());
+        }
+        int differentProfiles = 0;
+        for (int k = 0; k < numberOfProfiles; k++) {
+            final List<AudioLocalMaximumApertureInfo> expected = analysers[k].allLocalMaximums();
+            final List<AudioLocalMaximumApertureInfo> actual = multiProfileAnalyser.profile(k).allLocalMaximums();
+            final boolean same = expected.toString().equals(actual.toString())
+                && analysers[k].typicalAveragedSignal() == multiProfileAnalyser.profile(k).typicalAveragedSignal();
+            if (!same) {
+                differentProfiles++;
+            }
+            System.out.printf("Profile \"%s\": %d local maximums (%d good) and %d local maximums (%d good): %s%n",
+                PROFILE_NAMES[k], expected.size(), analysers[k].goodLocalMaximums().size(),
+                actual.size(), multiProfileAnalyser.profile(k).goodLocalMaximums().size(),
+                same ? "same" : "DIFFERENT");
+        }
+        System.out.println(differentProfiles == 0 ? "OK" : "DIFFERENT");
+    }
+
+    private static byte[] readAllBytes(InputStream inputStream) throws IOException {
+        try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            byte[] buffer = new byte[65536];
+            for (int len; (len = inputStream.read(buffer)) != -1; ) {
+                out.write(buffer, 0, len);
+            }
+            return out.toByteArray();
+        }
+    }
+}
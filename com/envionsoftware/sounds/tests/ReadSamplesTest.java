@@ -1,5 +1,7 @@
 package com.envionsoftware.sounds.tests;
 
+import com.envionsoftware.sounds.convertors.SampleCodec;
+
 import javax.sound.sampled.*;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
@@ -12,29 +14,6 @@ import java.util.Arrays;
 public class ReadSamplesTest {
     static final int NUMBER_OF_CHANNELS = 1;
 
-    public static int[][] getUnscaledAmplitude(byte[] eightBitByteArray, int nbChannels) {
-        int[][] toReturn = new int[nbChannels][eightBitByteArray.length / (2 * nbChannels)];
-        int index = 0;
-
-        for (int audioByte = 0; audioByte < eightBitByteArray.length;)
-        {
-            for (int channel = 0; channel < nbChannels; channel++)
-            {
-                // Do the byte to sample conversion.
-                int low = (int) eightBitByteArray[audioByte];
-                audioByte++;
-                int high = (int) eightBitByteArray[audioByte];
-                audioByte++;
-                int sample = (high << 8) + (low & 0x00ff);
-
-                toReturn[channel][index] = sample;
-            }
-            index++;
-        }
-
-        return toReturn;
-    }
-
     public static String getFileExtension(String fileName) {
         int p = fileName.lastIndexOf('.');
         if (p == -1) {
@@ -61,7 +40,17 @@ public class ReadSamplesTest {
             out.write(data, 0, numBytesRead);
             System.out.println(numBytesRead);
         }
-        final int[][] amplitude = getUnscaledAmplitude(out.toByteArray(), NUMBER_OF_CHANNELS);
-        System.out.println(Arrays.toString(amplitude[0]));
+        final byte[] bytes = out.toByteArray();
+        final SampleCodec codec = SampleCodec.forFormat(audioFormat);
+        final int numberOfFrames = bytes.length / codec.frameSize();
+        final int[] channels = new int[NUMBER_OF_CHANNELS];
+        for (int k = 0; k < channels.length; k++) {
+            channels[k] = k;
+        }
+        final short[][] amplitude = new short[NUMBER_OF_CHANNELS][numberOfFrames];
+        codec.decodeChannels(bytes, 0, numberOfFrames, channels, amplitude, 0);
+        for (short[] channelAmplitude : amplitude) {
+            System.out.println(Arrays.toString(channelAmplitude));
+        }
     }
 }
@@ -0,0 +1,110 @@
+package com.envionsoftware.sounds.tests;
+
+import com.envionsoftware.sounds.analysis.AudioAnalyser;
+import com.envionsoftware.sounds.analysis.ParameterSweep;
+import com.envionsoftware.sounds.convertors.SampleCodec;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+// Evaluates a grid of analysis parameters on a labelled corpus. Every non-empty line of the corpus file
+// (except lines starting with #) contains a WAV file name (relative to the corpus file) and times of events
+// in seconds, separated by spaces; only the first channel is analysed.
+public class TuneParameters {
+    private static final int LOUD_SOUND_AMPLITUDE = Integer.getInteger("loadSoundAmplitude", 1000);
+    private static final int NUMBER_OF_THREADS = Integer.getInteger("threads",
+        Runtime.getRuntime().availableProcessors());
+    private static final double TOLERANCE = Double.parseDouble(System.getProperty("tolerance", "0.1"));
+    private static final double MIN_PRECISION = Double.parseDouble(System.getProperty("minPrecision", "0.9"));
+    private static final double MIN_RECALL = Double.parseDouble(System.getProperty("minRecall", "0.9"));
+
+    private static double[] getChannel(byte[] bytes, AudioFormat audioFormat, int channel) {
+        final SampleCodec codec = SampleCodec.forFormat(audioFormat);
+        final double[] result = new double[bytes.length / codec.frameSize()];
+        codec.decode(bytes, channel * codec.bytesPerSample(), codec.frameSize(), result, 0, result.length,
+            SampleCodec.INT16_SCALE);
+        return result;
+    }
+
+    public static void main(String[] args) throws IOException, UnsupportedAudioFileException {
+        if (args.length < 2) {
+            System.out.printf("Usage: %s corpus.txt PARAMETER=value1,value2,... [PARAMETER=...]%n"
+                    + "where PARAMETER is one of %s%n",
+                TuneParameters.class.getName(), Arrays.toString(ParameterSweep.Parameter.values()));
+            return;
+        }
+        final File corpusFile = new File(args[0]);
+        final AudioAnalyser baseParameters = new AudioAnalyser(1.0 / 44100.0);
+        // - sample duration of baseParameters is not used
+        baseParameters.setGlobalAmplitudeOfLoudSound(LOUD_SOUND_AMPLITUDE);
+        final ParameterSweep sweep = new ParameterSweep(baseParameters);
+        sweep.setMatchingTolerance(TOLERANCE);
+        sweep.setNumberOfThreads(NUMBER_OF_THREADS);
+        for (int k = 1; k < args.length; k++) {
+            final String[] nameAndValues = args[k].split("=", 2);
+            if (nameAndValues.length != 2) {
+                throw new IllegalArgumentException("Invalid grid dimension " + args[k]);
+            }
+            final String[] values = nameAndValues[1].split(",");
+            final double[] doubles = new double[values.length];
+            for (int i = 0; i < values.length; i++) {
+                doubles[i] = Double.parseDouble(values[i].trim());
+            }
+            sweep.addParameter(ParameterSweep.Parameter.valueOf(nameAndValues[0].trim()), doubles);
+        }
+        long t1 = System.nanoTime();
+        for (String line : Files.readAllLines(corpusFile.toPath(), StandardCharsets.UTF_8)) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            final String[] items = line.split("\\s+");
+            final double[] eventTimes = new double[items.length - 1];
+            for (int i = 1; i < items.length; i++) {
+                eventTimes[i - 1] = Double.parseDouble(items[i]);
+            }
+            Arrays.sort(eventTimes);
+            final File wavFile = new File(corpusFile.getAbsoluteFile().getParentFile(), items[0]);
+            try (final AudioInputStream inputStream = AudioSystem.getAudioInputStream(wavFile)) {
+                final AudioFormat audioFormat = inputStream.getFormat();
+                sweep.addRecording(items[0], getChannel(readAllBytes(inputStream), audioFormat, 0),
+                    1.0 / audioFormat.getFrameRate(), eventTimes);
+            }
+        }
+        long t2 = System.nanoTime();
+        final List<ParameterSweep.Result> results = sweep.run();
+        long t3 = System.nanoTime();
+        System.out.printf("%d recordings loaded in %.3f ms; %d configurations evaluated in %.3f ms, %d threads%n%n",
+            sweep.numberOfRecordings(), (t2 - t1) * 1e-6, results.size(), (t3 - t2) * 1e-6, NUMBER_OF_THREADS);
+        final List<ParameterSweep.Result> sorted = new ArrayList<>(results);
+        sorted.sort(Comparator.comparingLong(ParameterSweep.Result::getRuntimeNanos));
+        for (ParameterSweep.Result result : sorted) {
+            System.out.println(result);
+        }
+        final ParameterSweep.Result cheapest = ParameterSweep.cheapestResult(results, MIN_PRECISION, MIN_RECALL);
+        System.out.printf("%nCheapest configuration with precision >= %.3f and recall >= %.3f: %s%n",
+            MIN_PRECISION, MIN_RECALL, cheapest == null ? "not found" : cheapest);
+    }
+
+    private static byte[] readAllBytes(InputStream inputStream) throws IOException {
+        try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            byte[] buffer = new byte[65536];
+            for (int len; (len = inputStream.read(buffer)) != -1; ) {
+                out.write(buffer, 0, len);
+            }
+            return out.toByteArray();
+        }
+    }
+}
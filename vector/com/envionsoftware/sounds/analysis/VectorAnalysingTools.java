@@ -0,0 +1,154 @@
+package com.envionsoftware.sounds.analysis;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+// SIMD versions of some AnalysingTools functions, based on the incubator Vector API.
+// This class is an optional source set (the "vector" source root), which is compiled separately with
+// "--add-modules jdk.incubator.vector" option against the core classes (see README.md). AnalysingTools finds it
+// by reflection only if the JVM is started with the same option; in other case this class is never loaded,
+// and AnalysingTools uses its scalar code.
+final class VectorAnalysingTools implements VectorKernels {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    private static final int LENGTH = SPECIES.length();
+    private static final int SHORT_RANGE = 4 * LENGTH;
+    // - for shorter ranges, minValue and maxValue use simple loop (broadcast and reduction are not free)
+
+    // Instantiated by AnalysingTools via reflection
+    VectorAnalysingTools() {
+    }
+
+    @Override
+    public void squares(double[] result, double[] values, int count) {
+        int k = 0;
+        for (int bound = SPECIES.loopBound(count); k < bound; k += LENGTH) {
+            final DoubleVector v = DoubleVector.fromArray(SPECIES, values, k);
+            v.mul(v).intoArray(result, k);
+        }
+        for (; k < count; k++) {
+            result[k] = values[k] * values[k];
+        }
+    }
+
+    @Override
+    public double maxValue(double[] values, int from, int to) {
+        if (to - from < SHORT_RANGE) {
+            double result = Double.NEGATIVE_INFINITY;
+            for (int k = from; k < to; k++) {
+                result = Math.max(result, values[k]);
+            }
+            return result;
+        }
+        DoubleVector max = DoubleVector.broadcast(SPECIES, Double.NEGATIVE_INFINITY);
+        int k = from;
+        for (int bound = from + SPECIES.loopBound(to - from); k < bound; k += LENGTH) {
+            max = max.max(DoubleVector.fromArray(SPECIES, values, k));
+        }
+        double result = max.reduceLanes(VectorOperators.MAX);
+        for (; k < to; k++) {
+            result = Math.max(result, values[k]);
+        }
+        return result;
+    }
+
+    @Override
+    public double minValue(double[] values, int from, int to) {
+        if (to - from < SHORT_RANGE) {
+            double result = Double.POSITIVE_INFINITY;
+            for (int k = from; k < to; k++) {
+                result = Math.min(result, values[k]);
+            }
+            return result;
+        }
+        DoubleVector min = DoubleVector.broadcast(SPECIES, Double.POSITIVE_INFINITY);
+        int k = from;
+        for (int bound = from + SPECIES.loopBound(to - from); k < bound; k += LENGTH) {
+            min = min.min(DoubleVector.fromArray(SPECIES, values, k));
+        }
+        double result = min.reduceLanes(VectorOperators.MIN);
+        for (; k < to; k++) {
+            result = Math.min(result, values[k]);
+        }
+        return result;
+    }
+
+    @Override
+    public int firstGreater(double[] values, int from, int to, double threshold) {
+        final DoubleVector thresholdVector = DoubleVector.broadcast(SPECIES, threshold);
+        int k = from;
+        for (int bound = from + SPECIES.loopBound(Math.max(to - from, 0)); k < bound; k += LENGTH) {
+            final VectorMask<Double> mask = DoubleVector.fromArray(SPECIES, values, k)
+                .compare(VectorOperators.GT, thresholdVector);
+            if (mask.anyTrue()) {
+                return k + mask.firstTrue();
+            }
+        }
+        for (; k < to; k++) {
+            if (values[k] > threshold) {
+                return k;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int lastGreater(double[] values, int from, int to, double threshold) {
+        final DoubleVector thresholdVector = DoubleVector.broadcast(SPECIES, threshold);
+        int k = to;
+        for (; k - from >= LENGTH; ) {
+            k -= LENGTH;
+            final VectorMask<Double> mask = DoubleVector.fromArray(SPECIES, values, k)
+                .compare(VectorOperators.GT, thresholdVector);
+            if (mask.anyTrue()) {
+                return k + mask.lastTrue();
+            }
+        }
+        for (k--; k >= from; k--) {
+            if (values[k] > threshold) {
+                return k;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int firstLess(double[] values, int from, int to, double threshold) {
+        final DoubleVector thresholdVector = DoubleVector.broadcast(SPECIES, threshold);
+        int k = from;
+        for (int bound = from + SPECIES.loopBound(Math.max(to - from, 0)); k < bound; k += LENGTH) {
+            final VectorMask<Double> mask = DoubleVector.fromArray(SPECIES, values, k)
+                .compare(VectorOperators.LT, thresholdVector);
+            if (mask.anyTrue()) {
+                return k + mask.firstTrue();
+            }
+        }
+        for (; k < to; k++) {
+            if (values[k] < threshold) {
+                return k;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int lastLess(double[] values, int from, int to, double threshold) {
+        final DoubleVector thresholdVector = DoubleVector.broadcast(SPECIES, threshold);
+        int k = to;
+        for (; k - from >= LENGTH; ) {
+            k -= LENGTH;
+            final VectorMask<Double> mask = DoubleVector.fromArray(SPECIES, values, k)
+                .compare(VectorOperators.LT, thresholdVector);
+            if (mask.anyTrue()) {
+                return k + mask.lastTrue();
+            }
+        }
+        for (k--; k >= from; k--) {
+            if (values[k] < threshold) {
+                return k;
+            }
+        }
+        return -1;
+    }
+}